@@ -0,0 +1,418 @@
+package com.wordpress.ninedof.beamupwear;
+
+/**
+ * Everything drawn on the interactive face as plain ints, with the layout maths and the damage
+ * each change causes. Free of android.* so the same draw logic runs against a device Canvas and
+ * against an off-screen stand-in on a plain JVM.
+ */
+final class BeamUpScene {
+
+    static final int
+        NUM_DIGITS = 4,
+        TIME_SIZE_ROUND = 100, TIME_SIZE_SQUARE = 90,
+        DATE_SIZE_ROUND = 40, DATE_SIZE_SQUARE = 30;
+
+    // Complication slots, also used as the complication ids
+    static final int COMPLICATION_TOP = 0, COMPLICATION_DATE = 1, NUM_COMPLICATIONS = 2;
+
+    // Same values as android.graphics.Color
+    static final int WHITE = 0xFFFFFFFF, BLACK = 0xFF000000, DIRTY_WHITE = 0xFFC8C8C8;
+
+    /**
+     * Receives the draw calls for a frame. fill() clears whatever clip is active.
+     */
+    interface Target {
+        void clipTo(int left, int top, int right, int bottom);
+        void clearClip();
+        void fill(int color);
+        // Edges may fall between pixels, targets that can blend them should
+        void fillRect(float left, float top, float right, float bottom, int color);
+        void drawTimeGlyph(char c, int rightX, int baselineY, int color);
+        void drawDateText(CharSequence text, int rightX, int baselineY, int color);
+        void drawDateGlyph(char c, int rightX, int baselineY, int color);
+        void drawComplication(int slot, int left, int top, int right, int bottom);
+    }
+
+    // Beams hang from the top of the screen, or of their clock row, to a sub-pixel bottom
+    static final class Beam {
+        int left, top, right, color = WHITE;
+        float bottom;
+    }
+
+    // x is the right edge of the glyph, y its baseline
+    static final class Digit {
+        int value, x, y, color = WHITE;
+    }
+
+    // Grows from the left edge of the screen, to a sub-pixel right
+    static final class Bar {
+        int top, bottom, color = WHITE;
+        float right;
+    }
+
+    final Beam[] beams = new Beam[NUM_DIGITS];
+    final Digit[] digits = new Digit[NUM_DIGITS];
+    final Bar bar = new Bar();
+    final DirtyRegion dirty = new DirtyRegion();
+
+    private static final ClockRow[] NO_ROWS = new ClockRow[0];
+
+    FaceLayout layout;
+    ClockRow[] rows = NO_ROWS;
+    CharSequence date = "", companion = "";
+    // Colors of everything drawn, element colors below are kept in step with it
+    Palette palette = Palette.CLASSIC;
+    // Slots that currently have something to show, their pixels are kept by the target
+    final boolean[] complications = new boolean[NUM_COMPLICATIONS];
+
+    private GlyphAtlasLayout mTimeGlyphs, mDateGlyphs;
+    private int mClipLeft, mClipTop, mClipRight, mClipBottom;
+
+    BeamUpScene() {
+        for (int i = 0; i < NUM_DIGITS; i++) {
+            beams[i] = new Beam();
+            digits[i] = new Digit();
+        }
+    }
+
+    void layout(FaceLayout layout, GlyphAtlasLayout timeGlyphs, GlyphAtlasLayout dateGlyphs) {
+        this.layout = layout;
+        mTimeGlyphs = timeGlyphs;
+        mDateGlyphs = dateGlyphs;
+
+        bar.top = layout.barTop;
+        bar.bottom = layout.barBottom;
+        for (int i = 0; i < NUM_DIGITS; i++) {
+            digits[i].x = layout.digitX(i);
+            digits[i].y = layout.baseline;
+
+            beams[i].left = layout.beamLeft(i);
+            beams[i].right = layout.beamRight(i);
+        }
+        layoutRows();
+
+        dirty.addAll();
+    }
+
+    void setRows(ClockRow[] rows) {
+        this.rows = rows;
+        for (ClockRow row : rows) {
+            for (int i = 0; i < row.digits.length; i++) {
+                row.beams[i].color = palette.row;
+                row.digits[i].color = palette.row;
+            }
+        }
+        layoutRows();
+        dirty.addAll();
+    }
+
+    // Each row is centered under the one above, starting from the companion line
+    private void layoutRows() {
+        if (layout == null) return;
+
+        GlyphAtlasLayout glyphs = mDateGlyphs;
+        int ascent = -glyphs.ascent;
+        int descent = glyphs.cellHeight - (2 * glyphs.padding) - ascent;
+        int previousBaseline = layout.companionY;
+        for (ClockRow row : rows) {
+            row.top = previousBaseline + descent + FaceLayout.SEPARATION;
+            row.baseline = row.top + ascent;
+            row.visible = row.baseline + descent <= layout.height - layout.chinHeight;
+            previousBaseline = row.baseline;
+
+            int digitWidth = glyphs.advance(glyphs.indexOf('0'));
+            int colonWidth = row.hasColon() ? glyphs.advance(glyphs.indexOf(':')) : 0;
+            int x = (layout.width - ((row.digits.length * digitWidth) + colonWidth)) / 2;
+            for (int i = 0; i < row.digits.length; i++) {
+                // HH:MM, the colon sits after the second digit
+                if (row.hasColon() && i == 2) {
+                    x += colonWidth;
+                    row.colonX = x;
+                }
+                x += digitWidth;
+
+                row.digits[i].x = x;
+                row.digits[i].y = row.baseline;
+                row.beams[i].left = x - digitWidth;
+                row.beams[i].right = x;
+                row.beams[i].top = row.top;
+                row.beams[i].bottom = row.top;
+            }
+        }
+    }
+
+    void setBeamBottom(int index, float bottom) {
+        moveBeam(beams[index], bottom);
+    }
+
+    void setDigitY(int index, int y) {
+        moveDigit(mTimeGlyphs, digits[index], y);
+    }
+
+    void setDigitColor(int index, int color) {
+        recolorDigit(mTimeGlyphs, digits[index], color);
+    }
+
+    // Back to the palette's color, after being cut out of its beam
+    void restoreDigitColor(int index) {
+        setDigitColor(index, palette.digits[index]);
+    }
+
+    void setDigitValue(int index, int value) {
+        changeDigit(mTimeGlyphs, digits[index], value);
+    }
+
+    void setRowDigitValue(ClockRow row, int index, int value) {
+        changeDigit(mDateGlyphs, row.digits[index], value);
+    }
+
+    private void moveBeam(Beam beam, float bottom) {
+        if (bottom == beam.bottom) return;
+
+        // Out to the partly covered pixel
+        dirty.add(beam.left, beam.top, beam.right, (int) Math.ceil(Math.max(bottom, beam.bottom)));
+        beam.bottom = bottom;
+    }
+
+    private void moveDigit(GlyphAtlasLayout glyphs, Digit digit, int y) {
+        if (y == digit.y) return;
+
+        markDigitDirty(glyphs, digit);
+        digit.y = y;
+        markDigitDirty(glyphs, digit);
+    }
+
+    private void recolorDigit(GlyphAtlasLayout glyphs, Digit digit, int color) {
+        if (color == digit.color) return;
+
+        digit.color = color;
+        markDigitDirty(glyphs, digit);
+    }
+
+    private void changeDigit(GlyphAtlasLayout glyphs, Digit digit, int value) {
+        if (value == digit.value) return;
+
+        markDigitDirty(glyphs, digit);
+        digit.value = value;
+        markDigitDirty(glyphs, digit);
+    }
+
+    void setBarRight(float right) {
+        if (right == bar.right) return;
+
+        // Only the span between the old and new edge, a continuous bar moves a pixel or less
+        dirty.add((int) Math.min(right, bar.right), bar.top, (int) Math.ceil(Math.max(right, bar.right)), bar.bottom);
+        bar.right = right;
+    }
+
+    void setDate(CharSequence date) {
+        this.date = date;
+        dirty.addAll();
+    }
+
+    // Phone values, under the date. May be edited in place, so the whole line is repainted
+    void setCompanion(CharSequence companion) {
+        this.companion = companion;
+        if (layout == null) return;
+
+        int top = mDateGlyphs.destTop(layout.companionY);
+        dirty.add(0, top, layout.width, top + mDateGlyphs.cellHeight);
+    }
+
+    // The slot's content was rasterized again, or it gained or lost its data
+    void setComplication(int slot, boolean visible) {
+        complications[slot] = visible;
+        if (layout == null) return;
+
+        dirty.add(layout.slotLeft(slot), layout.slotTop(slot), layout.slotRight(slot), layout.slotBottom(slot));
+    }
+
+    /**
+     * Recolor everything in place, without any layout. Digits cut out of their beam stay cut out.
+     *
+     * @return false if the palette was already shown
+     */
+    boolean setPalette(Palette palette) {
+        if (palette == this.palette) return false;
+
+        Palette previous = this.palette;
+        this.palette = palette;
+        for (int i = 0; i < NUM_DIGITS; i++) {
+            beams[i].color = palette.beams[i];
+            digits[i].color = digits[i].color == previous.background ? palette.background : palette.digits[i];
+        }
+        for (ClockRow row : rows) {
+            for (int i = 0; i < row.digits.length; i++) {
+                row.beams[i].color = palette.row;
+                row.digits[i].color = row.digits[i].color == previous.background ? palette.background : palette.row;
+            }
+        }
+        bar.color = palette.bar;
+
+        dirty.addAll();
+        return true;
+    }
+
+    // Right edge of the companion text, centered on its line
+    int companionX() {
+        return (layout.width + mDateGlyphs.measure(companion)) / 2;
+    }
+
+    // Positions every animating beam and digit for a point in the minute transition
+    void applyTransition(long elapsedMs, int changedDigits) {
+        float beam = MinuteTimeline.evaluate(MinuteTimeline.TRACK_BEAM, elapsedMs);
+        float digit = MinuteTimeline.evaluate(MinuteTimeline.TRACK_DIGIT, elapsedMs);
+        boolean hidden = MinuteTimeline.isDigitHidden(elapsedMs);
+
+        float beamBottom = beam * layout.baseline;
+        int digitY = Math.round(-layout.timeSize + (digit * (layout.baseline + layout.timeSize)));
+        for (int i = 0; i < NUM_DIGITS; i++) {
+            if (!DigitRollover.isChanged(changedDigits, i)) continue;
+
+            setBeamBottom(i, beamBottom);
+            setDigitY(i, digitY);
+            setDigitColor(i, hidden ? palette.background : palette.digits[i]);
+        }
+
+        // Rows run the same timeline within their own band
+        for (ClockRow row : rows) {
+            if (!row.visible || !row.animates()) continue;
+
+            float rowBeamBottom = row.top + (beam * (row.baseline - row.top));
+            int rowDigitY = row.top + Math.round(digit * (row.baseline - row.top));
+            for (int i = 0; i < row.digits.length; i++) {
+                if (!DigitRollover.isChanged(row.transitionDigits, i)) continue;
+
+                moveBeam(row.beams[i], rowBeamBottom);
+                moveDigit(mDateGlyphs, row.digits[i], rowDigitY);
+                recolorDigit(mDateGlyphs, row.digits[i], hidden ? palette.background : palette.row);
+            }
+        }
+    }
+
+    private void markDigitDirty(GlyphAtlasLayout glyphs, Digit digit) {
+        if (glyphs == null) return;
+
+        int index = glyphs.indexOf((char) ('0' + digit.value));
+        if (index < 0) return;
+
+        int left = glyphs.destLeft(index, digit.x);
+        int top = glyphs.destTop(digit.y);
+        dirty.add(left, top, left + glyphs.cellWidth(index), top + glyphs.cellHeight);
+    }
+
+    /**
+     * Repaint whatever was damaged since the last call, then reset the damage.
+     */
+    void render(Target target) {
+        if (mTimeGlyphs == null) return;
+
+        if (dirty.isFull()) {
+            setClip(0, 0, layout.width, layout.height);
+            target.fill(palette.background);
+            draw(target);
+        } else {
+            for (int i = 0; i < dirty.size(); i++) {
+                setClip(dirty.left(i), dirty.top(i), dirty.right(i), dirty.bottom(i));
+                target.clipTo(mClipLeft, mClipTop, mClipRight, mClipBottom);
+                target.fill(palette.background);
+                draw(target);
+                target.clearClip();
+            }
+        }
+        dirty.clear();
+    }
+
+    /**
+     * Draw every element, skipping those entirely outside the current clip.
+     */
+    void draw(Target target) {
+        // Underneath everything, beams sweep over the top slot
+        for (int i = 0; i < NUM_COMPLICATIONS; i++) {
+            int left = layout.slotLeft(i), top = layout.slotTop(i);
+            int right = layout.slotRight(i), bottom = layout.slotBottom(i);
+            if (complications[i] && isVisible(left, top, right, bottom)) {
+                target.drawComplication(i, left, top, right, bottom);
+            }
+        }
+
+        for (int i = 0; i < NUM_DIGITS; i++) {
+            Beam beam = beams[i];
+            if (isVisible(beam.left, beam.top, beam.right, beam.bottom)) {
+                target.fillRect(beam.left, beam.top, beam.right, beam.bottom, beam.color);
+            }
+
+            Digit digit = digits[i];
+            char c = (char) ('0' + digit.value);
+            if (isGlyphVisible(mTimeGlyphs, digit.x, digit.y, advanceOf(mTimeGlyphs, c))) {
+                target.drawTimeGlyph(c, digit.x, digit.y, digit.color);
+            }
+        }
+
+        // Before the date, which a lifted row digit passes behind
+        for (ClockRow row : rows) {
+            if (row.visible) drawRow(target, row);
+        }
+
+        if (isGlyphVisible(mTimeGlyphs, layout.colonX, layout.baseline, advanceOf(mTimeGlyphs, ':'))) {
+            target.drawTimeGlyph(':', layout.colonX, layout.baseline, palette.colon);
+        }
+        if (isGlyphVisible(mDateGlyphs, layout.dateX, layout.dateY, mDateGlyphs.measure(date))) {
+            target.drawDateText(date, layout.dateX, layout.dateY, palette.date);
+        }
+        if (companion.length() > 0) {
+            int companionX = companionX();
+            if (isGlyphVisible(mDateGlyphs, companionX, layout.companionY, mDateGlyphs.measure(companion))) {
+                target.drawDateText(companion, companionX, layout.companionY, palette.date);
+            }
+        }
+
+        if (isVisible(0, bar.top, bar.right, bar.bottom)) {
+            target.fillRect(0, bar.top, bar.right, bar.bottom, bar.color);
+        }
+    }
+
+    private void drawRow(Target target, ClockRow row) {
+        for (int i = 0; i < row.digits.length; i++) {
+            Beam beam = row.beams[i];
+            if (isVisible(beam.left, beam.top, beam.right, beam.bottom)) {
+                target.fillRect(beam.left, beam.top, beam.right, beam.bottom, beam.color);
+            }
+
+            Digit digit = row.digits[i];
+            char c = (char) ('0' + digit.value);
+            if (isGlyphVisible(mDateGlyphs, digit.x, digit.y, advanceOf(mDateGlyphs, c))) {
+                target.drawDateGlyph(c, digit.x, digit.y, digit.color);
+            }
+        }
+
+        if (row.hasColon() && isGlyphVisible(mDateGlyphs, row.colonX, row.baseline, advanceOf(mDateGlyphs, ':'))) {
+            target.drawDateGlyph(':', row.colonX, row.baseline, palette.row);
+        }
+    }
+
+    private int advanceOf(GlyphAtlasLayout glyphs, char c) {
+        int index = glyphs.indexOf(c);
+        return index < 0 ? 0 : glyphs.advance(index);
+    }
+
+    private void setClip(int left, int top, int right, int bottom) {
+        mClipLeft = left;
+        mClipTop = top;
+        mClipRight = right;
+        mClipBottom = bottom;
+    }
+
+    private boolean isVisible(float left, float top, float right, float bottom) {
+        return left < right && top < bottom
+                && left < mClipRight && mClipLeft < right && top < mClipBottom && mClipTop < bottom;
+    }
+
+    // Right aligned text of the given width, out to the widest its glyph cells reach
+    private boolean isGlyphVisible(GlyphAtlasLayout glyphs, int rightX, int baselineY, int textWidth) {
+        int top = glyphs.destTop(baselineY);
+        return isVisible(rightX - textWidth - glyphs.overhangLeft, top,
+                rightX + glyphs.overhangRight, top + glyphs.cellHeight);
+    }
+
+}
@@ -1,68 +1,348 @@
 package com.wordpress.ninedof.beamupwear;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
+import android.app.PendingIntent;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
+import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
 import android.support.v4.content.res.ResourcesCompat;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationHelperActivity;
+import android.support.wearable.complications.SystemProviders;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.util.Log;
+import android.text.format.DateFormat;
+import android.view.Choreographer;
+import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
-
-import java.util.Calendar;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 public class BeamUpWatchface extends CanvasWatchFaceService {
 
-    private static final String TAG = BeamUpWatchface.class.getSimpleName();
-    private static final long UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
-    private static final int MSG_UPDATE_TIME = 0;
+    private static final int
+        MSG_UPDATE_TIME = 0, MSG_COMPANION_FLUSH = 1, MSG_THEME_CHANGED = 2,
+        MSG_RECORD_START = 3, MSG_RECORD_STOP = 4, MSG_BAR_FRAME = 5,
+        MSG_GLYPH_ATLAS_ON = 6, MSG_GLYPH_ATLAS_OFF = 7;
+
+    // Draw through lockHardwareCanvas() and recorded Pictures, read when the engine is created
+    private static final String PREFS_NAME = "beamup", PREF_HARDWARE_CANVAS = "hardware_canvas";
+    // Extra clock rows under the date, read whenever the face becomes visible
+    private static final String PREF_ZONE_ROW = "zone_row", PREF_SECONDS_ROW = "seconds_row";
+    // Redraws per second of a bar that follows the seconds, 0 for quarter steps, read whenever visible
+    private static final String PREF_BAR_FPS = "bar_fps";
+    // Shortest time between redraws for phone values, read when the engine is created
+    private static final String PREF_COMPANION_INTERVAL = "companion_interval_s";
+    private static final int COMPANION_INTERVAL_S = 60;
+    // Palette name, crossfaded to when changed while the face is showing
+    private static final String PREF_THEME = "theme";
+    // Recorded inputs, in the app's files directory for adb to pull
+    private static final String INPUT_LOG_NAME = "input.log";
+    // Names of the software text paths in the frame stats
+    private static final String TEXT_PATH_ATLAS = "glyph atlas", TEXT_PATH_DRAW_TEXT = "drawText";
+    // The atlases' character sets, also drawn with drawText() by index
+    private static final String TIME_CHARS = GlyphAtlasLayout.TIME_CHARS, DATE_CHARS = GlyphAtlasLayout.DATE_CHARS;
 
-    private static int DIRTY_WHITE = Color.rgb(200, 200, 200);
     private static final int
-        BAR_ANIM_DURATION = 500, DIGIT_ANIM_DURATION = 300, BEAM_ANIM_DURATION = DIGIT_ANIM_DURATION,
-        DIGIT_DELAY = 300,
-        NUM_DIGITS = 4, BAR_HEIGHT = 10,
-        SEPARATION = 5,
-        TIME_SIZE_ROUND = 100, TIME_SIZE_SQUARE = 90,
-        DATE_SIZE_ROUND = 40, DATE_SIZE_SQUARE = 30;
+        NUM_DIGITS = BeamUpScene.NUM_DIGITS,
+        AMBIENT_STROKE_WIDTH = 2, BURN_IN_SHIFT = 4,
+        OVERLAY_TEXT_SIZE = 16, OVERLAY_LINE_HEIGHT = 18;
+
+    private Engine mEngine;
 
     @Override
     public Engine onCreateEngine() {
-        return new Engine();
+        mEngine = new Engine();
+        return mEngine;
+    }
+
+    // adb shell dumpsys activity service com.wordpress.ninedof.watchfacetest/com.wordpress.ninedof.beamupwear.BeamUpWatchface
+    //   [hardware|software] to pick the backend, taking effect when the face is next created
+    //   [zone <id>|zone none] [seconds on|off] for the extra rows, taking effect when next shown
+    //   [bar quarters|<fps>] for quarter steps or a continuous bar at up to fps, taking effect when next shown
+    //   [companion <field> <value>] to stand in for the phone, [companion interval <s>] to throttle
+    //   [complication top|date] to open the provider chooser for a slot
+    //   [theme <name>] to pick a palette, faded to straight away
+    //   [atlas on|off] to draw software frames from the glyph atlases or with drawText(), restarting the stats
+    //   [record start|stop] to record the face's inputs into files/input.log, for the benchmark's FaceReplay
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        if (args != null && args.length > 0 && ("hardware".equals(args[0]) || "software".equals(args[0]))) {
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                    .putBoolean(PREF_HARDWARE_CANVAS, "hardware".equals(args[0]))
+                    .apply();
+            writer.println("Backend set to " + args[0] + ", reselect the watch face to apply");
+        } else if (args != null && args.length > 1 && "zone".equals(args[0])) {
+            String zoneId = "none".equals(args[1]) ? "" : args[1];
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putString(PREF_ZONE_ROW, zoneId).apply();
+            writer.println("Zone row set to " + args[1]);
+        } else if (args != null && args.length > 1 && "seconds".equals(args[0])) {
+            boolean secondsRow = "on".equals(args[1]);
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putBoolean(PREF_SECONDS_ROW, secondsRow).apply();
+            writer.println("Seconds row " + (secondsRow ? "on" : "off"));
+        } else if (args != null && args.length > 1 && "bar".equals(args[0])) {
+            try {
+                int fps = "quarters".equals(args[1]) ? 0 : Integer.parseInt(args[1]);
+                getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putInt(PREF_BAR_FPS, fps).apply();
+                writer.println(fps > 0 ? "Continuous bar at up to " + fps + " fps" : "Bar in quarter steps");
+            } catch (NumberFormatException e) {
+                writer.println("Not a frame rate: " + args[1]);
+            }
+        } else if (args != null && args.length > 2 && "companion".equals(args[0])) {
+            if ("interval".equals(args[1])) {
+                try {
+                    getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                            .putInt(PREF_COMPANION_INTERVAL, Integer.parseInt(args[2]))
+                            .apply();
+                    writer.println("Companion interval set to " + args[2] + " s, reselect the watch face to apply");
+                } catch (NumberFormatException e) {
+                    writer.println("Not a number of seconds: " + args[2]);
+                }
+            } else if (mEngine != null && CompanionData.fieldOf(args[1]) >= 0) {
+                // Single letters, like a temperature unit, are sent as their char code
+                boolean isLetter = args[2].length() == 1 && Character.isLetter(args[2].charAt(0));
+                try {
+                    int value = isLetter ? args[2].charAt(0) : Integer.parseInt(args[2]);
+                    mEngine.mLocalCompanion.publish(CompanionData.fieldOf(args[1]), value);
+                    writer.println("Companion " + args[1] + " = " + args[2]);
+                } catch (NumberFormatException e) {
+                    writer.println("Not a number: " + args[2]);
+                }
+            }
+        } else if (args != null && args.length > 1 && "complication".equals(args[0])) {
+            int slot = "top".equals(args[1]) ? BeamUpScene.COMPLICATION_TOP
+                    : "date".equals(args[1]) ? BeamUpScene.COMPLICATION_DATE : -1;
+            if (slot >= 0) {
+                Intent chooser = ComplicationHelperActivity.createProviderChooserHelperIntent(this,
+                        new ComponentName(this, BeamUpWatchface.class), slot, ComplicationSlot.SUPPORTED_TYPES);
+                startActivity(chooser.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK));
+                writer.println("Choosing a provider for the " + args[1] + " complication on the watch");
+            }
+        } else if (args != null && args.length > 1 && "theme".equals(args[0])) {
+            if (Palette.named(args[1]).name.equals(args[1])) {
+                // apply() updates the in-memory prefs before the engine reads them on its own thread
+                getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putString(PREF_THEME, args[1]).apply();
+                if (mEngine != null) mEngine.mUpdateHandler.sendEmptyMessage(MSG_THEME_CHANGED);
+                writer.println("Theme set to " + args[1]);
+            } else {
+                StringBuilder names = new StringBuilder();
+                for (Palette palette : Palette.PALETTES) names.append(' ').append(palette.name);
+                writer.println("Unknown theme " + args[1] + ", one of:" + names);
+            }
+        } else if (args != null && args.length > 1 && "atlas".equals(args[0]) && mEngine != null) {
+            boolean atlas = "on".equals(args[1]);
+            mEngine.mUpdateHandler.sendEmptyMessage(atlas ? MSG_GLYPH_ATLAS_ON : MSG_GLYPH_ATLAS_OFF);
+            writer.println("Text drawn " + (atlas ? "from glyph atlases" : "with drawText()") + ", stats restarted");
+        } else if (args != null && args.length > 1 && "record".equals(args[0]) && mEngine != null) {
+            boolean start = "start".equals(args[1]);
+            mEngine.mUpdateHandler.sendEmptyMessage(start ? MSG_RECORD_START : MSG_RECORD_STOP);
+            writer.println(start ? "Recording inputs"
+                    : "Writing inputs to " + new File(getFilesDir(), INPUT_LOG_NAME));
+        }
+
+        if (mEngine != null) {
+            writer.println("BeamUpWatchface " + (mEngine.mUseHardwareCanvas ? "hardware" : "software")
+                    + " backend frame stats:");
+            mEngine.mFrameStats.dump(writer, "  ");
+            FramePacer pacer = mEngine.mFramePacer;
+            writer.println("  vsyncs " + pacer.vsyncs + ", draws " + pacer.draws + ", dropped " + pacer.dropped);
+        }
     }
 
     private class Engine extends CanvasWatchFaceService.Engine {
 
         private final Handler mUpdateHandler = new InteractiveUpdateHandler(this);
-        private Calendar mCalendar;
+        private final TickScheduler.Clock mClock = TickScheduler.SYSTEM_CLOCK;
+        private TickScheduler mTickScheduler = new TickScheduler(mClock, TickScheduler.FACE_SECONDS);
+        // Samples the bar and the minute transition once per vsync, then draws at most once
+        private final FramePacer mFramePacer = new FramePacer(FramePacer.SYSTEM_CLOCK, new FramePacer.Callbacks() {
+            @Override
+            public void postFrame() {
+                mChoreographer.postFrameCallback(mFrameCallback);
+            }
+
+            @Override
+            public boolean onAnimate(long frameTimeMs) {
+                return onAnimationFrame(frameTimeMs);
+            }
+
+            @Override
+            public boolean needsDraw() {
+                return isInteractive() && !mScene.dirty.isEmpty();
+            }
+
+            @Override
+            public void onDraw() {
+                drawFrame();
+            }
+        });
+        private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                if (mInputLog != null) mInputLog.vsync(frameTimeNanos);
+                mFramePacer.onVsync(frameTimeNanos);
+            }
+        };
+        private Choreographer mChoreographer;
+        // Time, bar and minute transition, moved by the inputs below and recorded while mInputLog is set
+        private FaceController mController;
+        private InputLog mInputLog;
+        // Bases for the PaintTables, only changed when the text size does
+        private final Paint mFillPaint = new Paint();
         private Paint mTimePaint, mDatePaint;
+        private GlyphAtlas mTimeAtlas, mDateAtlas;
+
+        // Theme, the controller runs the crossfade to it
+        private Palette mPalette = Palette.CLASSIC;
+        private PaintTable mFillPaints, mTimePaints, mDatePaints;
 
-        private BeamUpDigit[] mDigits = new BeamUpDigit[NUM_DIGITS];
-        private BeamUpBeam[] mBeams = new BeamUpBeam[NUM_DIGITS];
-        private BeamUpBar mBar = new BeamUpBar();
-        private Rect mTimeBounds = new Rect();
-        private String mDateStr = "";
+        private final BeamUpScene mScene = new BeamUpScene();
+        private final FaceController.Host mControllerHost = new FaceController.Host() {
+            @Override
+            public void requestFrame() {
+                mFramePacer.requestFrame();
+            }
+
+            @Override
+            public void requestFrameAt(long uptimeMs) {
+                mUpdateHandler.removeMessages(MSG_BAR_FRAME);
+                mUpdateHandler.sendEmptyMessageAtTime(MSG_BAR_FRAME, uptimeMs);
+            }
+
+            @Override
+            public void requestDraw() {
+                invalidate();
+            }
+
+            @Override
+            public void onMinuteShown() {
+                // Time dependent texts, like a countdown, only redraw if they read differently
+                for (int i = 0; i < mComplications.length; i++) updateComplication(i);
+                mAmbientFrameValid = false;
+            }
+
+            @Override
+            public void onStaticChanged() {
+                mPictureRenderer.invalidateStatic();
+            }
 
-        private int mTimeSize, mDateSize, mColonSize, mSurfaceWidth, mSurfaceHeight;
-        private boolean mIsRound;
+            @Override
+            public void onPaletteChanged() {
+                mPictureRenderer.invalidateStatic();
+                updateComplicationColors();
+            }
+
+            @Override
+            public void onThemeFadeFinished() {
+                // Drop the in-between paints
+                compileTheme();
+            }
+        };
+
+        // Retained frame, only the damaged parts of it are repainted each draw
+        private final CanvasTarget mCanvasTarget = new CanvasTarget();
+        private Bitmap mBackBuffer;
+        private Canvas mBackCanvas;
+        // Part of the surface locked for this frame, where the back buffer is copied to. A new or
+        // resized surface holds nothing of ours yet and is locked whole
+        private final Rect mLockBounds = new Rect();
+        private boolean mSurfaceFresh = true;
+
+        // Hardware backend, drawn from recorded Pictures
+        private final PictureRenderer mPictureRenderer = new PictureRenderer();
+        private final Rect mSurfaceBounds = new Rect();
+        private boolean mUseHardwareCanvas;
+
+        private int mSurfaceWidth, mSurfaceHeight, mChinHeight;
+        private boolean mIsRound, mHasInsets;
+        private FaceLayout mLayout;
+
+        // Text metrics and atlases from the last run with the same surface, shape and font. Saved
+        // once the first frame with them is out, written by a background thread
+        private RenderCache mRenderCache;
+        private HandlerThread mRenderCacheThread;
+        private Handler mRenderCacheHandler;
+        private boolean mRenderCacheUnsaved;
+        private int mTimeSize, mColonSize, mDateSize;
+
+        // Phone values, from the data layer or dumpsys, applied at most once per interval
+        private CompanionData mCompanion;
+        private CompanionChannel mWearableCompanion;
+        private final LocalCompanionChannel mLocalCompanion = new LocalCompanionChannel();
+        private final CompanionChannel.Listener mCompanionListener = new CompanionChannel.Listener() {
+            @Override
+            public void onFieldChanged(int field, int value) {
+                if (mCompanion.offer(field, value)) {
+                    mUpdateHandler.sendEmptyMessageDelayed(MSG_COMPANION_FLUSH, mCompanion.getDelayToFlush());
+                }
+            }
+        };
+
+        // Complications, each cached as a bitmap until its data or the ambient state changes
+        private final ComplicationSlot[] mComplications = new ComplicationSlot[BeamUpScene.NUM_COMPLICATIONS];
+
+        // Extra rows as last loaded, null until then
+        private String mZoneRowId;
+        private boolean mSecondsRow;
+        private int mBarFps = -1;
+
+        // Ambient frame, an outline of the time and date cached until the minute changes
+        private Paint mAmbientTimePaint, mAmbientDatePaint;
+        private Bitmap mAmbientFrame;
+        private Canvas mAmbientCanvas;
+        private boolean mAmbientFrameValid, mLowBitAmbient, mBurnInProtection;
+
+        // Frame timings, always recorded, shown over the face when the overlay is toggled by a tap
+        private final FrameStats mFrameStats = new FrameStats(TEXT_PATH_ATLAS);
+        private final StringBuilder mOverlayText = new StringBuilder();
+        private Paint mOverlayPaint;
+        private boolean mShowOverlay;
+        // Draw glyphs from pre-rendered atlases instead of shaping text every frame, software backend only
+        private boolean mUseGlyphAtlas = true;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
-            setWatchFaceStyle(new WatchFaceStyle.Builder(BeamUpWatchface.this).build());
-
-            mCalendar = Calendar.getInstance(TimeZone.getDefault());
+            setWatchFaceStyle(new WatchFaceStyle.Builder(BeamUpWatchface.this)
+                    .setAcceptsTapEvents(true)
+                    .build());
+
+            // The surface can't go back to software locking once it has been used by the GPU
+            SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+            mUseHardwareCanvas = prefs.getBoolean(PREF_HARDWARE_CANVAS, false);
+
+            mRenderCache = new RenderCache(getCacheDir());
+            mRenderCacheThread = new HandlerThread("render-cache", Process.THREAD_PRIORITY_BACKGROUND);
+            mRenderCacheThread.start();
+            mRenderCacheHandler = new Handler(mRenderCacheThread.getLooper());
+            mController = new FaceController(mScene, TimeZone.getDefault(), mControllerHost);
+            int companionIntervalS = prefs.getInt(PREF_COMPANION_INTERVAL, COMPANION_INTERVAL_S);
+            mCompanion = new CompanionData(mClock, TimeUnit.SECONDS.toMillis(companionIntervalS));
+            mWearableCompanion = new WearableCompanionChannel(BeamUpWatchface.this);
+            mWearableCompanion.start(mCompanionListener);
+            mLocalCompanion.start(mCompanionListener);
+
+            mChoreographer = Choreographer.getInstance();
 
             Typeface imagine = ResourcesCompat.getFont(getApplicationContext(), R.font.imagine);
             mTimePaint = new Paint();
@@ -73,19 +353,123 @@ public class BeamUpWatchface extends CanvasWatchFaceService {
             mDatePaint = new Paint();
             mDatePaint.setTypeface(imagine);
             mDatePaint.setTextAlign(Paint.Align.RIGHT);
-            mDatePaint.setColor(DIRTY_WHITE);
+            mDatePaint.setColor(BeamUpScene.DIRTY_WHITE);
 
-            for (int i = 0; i < NUM_DIGITS; i++) {
-                mDigits[i] = new BeamUpDigit(i);
-                mBeams[i] = new BeamUpBeam(i);
+            mFillPaint.setStyle(Paint.Style.FILL);
+            // Blends the sub-pixel edge of a moving beam or bar
+            mFillPaint.setAntiAlias(true);
+            mPalette = Palette.named(prefs.getString(PREF_THEME, Palette.CLASSIC.name));
+            mScene.setPalette(mPalette);
+
+            for (int i = 0; i < mComplications.length; i++) {
+                mComplications[i] = new ComplicationSlot(BeamUpWatchface.this, imagine);
             }
+            updateComplicationColors();
+            mPictureRenderer.setComplications(mComplications);
+            setDefaultSystemComplicationProvider(BeamUpScene.COMPLICATION_TOP,
+                    SystemProviders.NEXT_EVENT, ComplicationData.TYPE_SHORT_TEXT);
+            setDefaultSystemComplicationProvider(BeamUpScene.COMPLICATION_DATE,
+                    SystemProviders.WATCH_BATTERY, ComplicationData.TYPE_RANGED_VALUE);
+            setActiveComplications(BeamUpScene.COMPLICATION_TOP, BeamUpScene.COMPLICATION_DATE);
+
+            mAmbientTimePaint = new Paint(mTimePaint);
+            mAmbientTimePaint.setStyle(Paint.Style.STROKE);
+            mAmbientTimePaint.setStrokeWidth(AMBIENT_STROKE_WIDTH);
+            mAmbientDatePaint = new Paint(mDatePaint);
+            mAmbientDatePaint.setStyle(Paint.Style.STROKE);
+            mAmbientDatePaint.setStrokeWidth(AMBIENT_STROKE_WIDTH);
+
+            mOverlayPaint = new Paint();
+            mOverlayPaint.setTextAlign(Paint.Align.CENTER);
+            mOverlayPaint.setTextSize(OVERLAY_TEXT_SIZE);
+            mOverlayPaint.setColor(Color.YELLOW);
+            mOverlayPaint.setAntiAlias(true);
         }
 
         private void calculateSizeMetrics() {
-            mTimePaint.setTextSize(mIsRound ? TIME_SIZE_ROUND : TIME_SIZE_SQUARE);
-            mDatePaint.setTextSize(mIsRound ? DATE_SIZE_ROUND : DATE_SIZE_SQUARE);
+            // Only once both have arrived, the first of them alone would measure the wrong shape
+            if (mSurfaceWidth == 0 || !mHasInsets) return;
+
+            mTimePaint.setTextSize(mIsRound ? BeamUpScene.TIME_SIZE_ROUND : BeamUpScene.TIME_SIZE_SQUARE);
+            mDatePaint.setTextSize(mIsRound ? BeamUpScene.DATE_SIZE_ROUND : BeamUpScene.DATE_SIZE_SQUARE);
+            mAmbientTimePaint.setTextSize(mTimePaint.getTextSize());
+            mAmbientDatePaint.setTextSize(mDatePaint.getTextSize());
+
+            // Metrics and glyph atlases, only redone when size or shape actually changed
+            boolean atlasesChanged = false;
+            if (mTimeAtlas == null || !mTimeAtlas.matches(mTimePaint.getTextSize(), mIsRound)
+                    || !mDateAtlas.matches(mDatePaint.getTextSize(), mIsRound)) {
+                if (mTimeAtlas != null) mTimeAtlas.recycle();
+                if (mDateAtlas != null) mDateAtlas.recycle();
+                if (!loadRenderCache()) {
+                    measureText();
+                    mRenderCacheUnsaved = true;
+                }
+                atlasesChanged = true;
+            }
+
+            if (!atlasesChanged && mLayout != null && mLayout.matches(mSurfaceWidth, mSurfaceHeight, mChinHeight,
+                    mIsRound, mTimeSize, mColonSize, mDateSize)) return;
+
+            mLayout = new FaceLayout(mSurfaceWidth, mSurfaceHeight, mChinHeight, mIsRound,
+                    mTimeSize, mColonSize, mDateSize);
+            mScene.layout(mLayout, mTimeAtlas.layout, mDateAtlas.layout);
+            mAmbientFrameValid = false;
+            for (int i = 0; i < mComplications.length; i++) {
+                mComplications[i].setSize(mLayout.slotWidth(i), mLayout.slotHeight(i));
+                updateComplication(i);
+            }
 
-            // Font metrics
+            if (atlasesChanged) {
+                if (mUseHardwareCanvas) mPictureRenderer.setAtlases(mTimeAtlas, mDateAtlas);
+                // The text paints in the tables carry the new size
+                compileTheme();
+            }
+            mPictureRenderer.invalidateStatic();
+        }
+
+        // Immutable paints for every color the face can show until the theme next changes
+        private void compileTheme() {
+            Palette[] palettes = mController.fadeSteps();
+            if (palettes == null) palettes = new Palette[] { mPalette };
+            mFillPaints = new PaintTable(mFillPaint, palettes);
+            mTimePaints = new PaintTable(mTimePaint, palettes);
+            mDatePaints = new PaintTable(mDatePaint, palettes);
+            if (mUseHardwareCanvas) mPictureRenderer.setPalette(mPalette, mFillPaints, mTimePaints, mDatePaints);
+        }
+
+        // Crossfades when the face is showing, otherwise the next frame is simply in the new colors
+        private void loadTheme() {
+            SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+            Palette palette = Palette.named(prefs.getString(PREF_THEME, Palette.CLASSIC.name));
+            if (palette == mPalette) return;
+
+            mPalette = palette;
+            boolean fade = isInteractive() && mLayout != null;
+            long uptimeMs = SystemClock.uptimeMillis();
+            if (mInputLog != null) mInputLog.theme(palette.name, fade, uptimeMs);
+            mController.setTheme(palette, fade, uptimeMs);
+            if (mLayout != null) compileTheme();
+        }
+
+        private boolean loadRenderCache() {
+            RenderCache.Entry entry = mRenderCache.load(mSurfaceWidth, mSurfaceHeight, mIsRound, TIME_CHARS, DATE_CHARS);
+            if (entry == null) return false;
+            if (!entry.timeAtlas.matches(mTimePaint.getTextSize(), mIsRound)
+                    || !entry.dateAtlas.matches(mDatePaint.getTextSize(), mIsRound)) {
+                entry.recycle();
+                return false;
+            }
+
+            mTimeSize = entry.timeSize;
+            mColonSize = entry.colonSize;
+            mDateSize = entry.dateSize;
+            mTimeAtlas = entry.timeAtlas;
+            mDateAtlas = entry.dateAtlas;
+            return true;
+        }
+
+        private void measureText() {
             Rect bounds = new Rect();
             mTimePaint.getTextBounds("0", 0, 1, bounds);
             mTimeSize = bounds.right; //(mIsRound ? 8 : 0);
@@ -94,83 +478,139 @@ public class BeamUpWatchface extends CanvasWatchFaceService {
             mDatePaint.getTextBounds("0", 0, 1, bounds);
             mDateSize = bounds.right;
 
-            // Time bounds rect
-            int totalWidth = (4 * mTimeSize) + mColonSize + (4 * SEPARATION);
-            mTimeBounds.left = (mSurfaceWidth - totalWidth) / 2;
-            mTimeBounds.top = (mSurfaceHeight - mTimeSize) / 2;
-            mTimeBounds.right = mTimeBounds.left + totalWidth;
-            mTimeBounds.bottom = mTimeBounds.top + mTimeSize;
-
-            // Bar
-            mBar.bounds.top = mTimeBounds.top + mTimeSize + SEPARATION;
-            mBar.bounds.bottom = mBar.bounds.top + BAR_HEIGHT;
+            mTimeAtlas = new GlyphAtlas(mTimePaint, TIME_CHARS, mIsRound);
+            mDateAtlas = new GlyphAtlas(mDatePaint, DATE_CHARS, mIsRound);
+        }
 
-            // Digits
-            for (int i = 0; i < NUM_DIGITS; i++) mDigits[i].yPosition = mTimeBounds.top + mTimeSize;
+        private void updateBackBuffer() {
+            if (mUseHardwareCanvas) return;
+            if (mBackBuffer != null) {
+                if (mBackBuffer.getWidth() == mSurfaceWidth && mBackBuffer.getHeight() == mSurfaceHeight) return;
+                mBackBuffer.recycle();
+            }
 
-            // Beam metrics
-            for (int i = 0; i < NUM_DIGITS; i++) mBeams[i].updateMetrics();
+            mBackBuffer = Bitmap.createBitmap(mSurfaceWidth, mSurfaceHeight, Bitmap.Config.ARGB_8888);
+            mBackCanvas = new Canvas(mBackBuffer);
+            mScene.dirty.addAll();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            canvas.drawColor(Color.BLACK);
-
-            for (int i = 0; i < NUM_DIGITS; i++) {
-                mBeams[i].draw(canvas);
-                mDigits[i].draw(canvas);
+            mFrameStats.onDrawStart(System.nanoTime());
+
+            if (isInAmbientMode()) {
+                drawAmbient(canvas);
+            } else if (canvas.isHardwareAccelerated()) {
+                // Whole frame every time, the GPU doesn't keep the previous buffer
+                mPictureRenderer.draw(canvas, mScene);
+                mScene.dirty.clear();
+            } else if (mBackBuffer == null) {
+                mScene.dirty.addAll();
+                mCanvasTarget.canvas = canvas;
+                mScene.render(mCanvasTarget);
+            } else {
+                mCanvasTarget.canvas = mBackCanvas;
+                mScene.render(mCanvasTarget);
+                canvas.drawBitmap(mBackBuffer, mLockBounds, mLockBounds, null);
             }
 
-            int colonXOffset = mTimeBounds.left + (2 * mTimeSize) + mColonSize;
-            colonXOffset += mIsRound ? (5 * SEPARATION) : (4 * SEPARATION);
-            canvas.drawText(":", colonXOffset, mTimeBounds.top + mTimeSize, mTimePaint);
+            mFrameStats.onDrawEnd(System.nanoTime(), mController.isTransitionRunning());
+            if (mShowOverlay && !isInAmbientMode()) drawOverlay(canvas);
+        }
 
-            int dateXOffset = mTimeBounds.right;
-            int dateYOffset = mTimeBounds.top + mTimeSize + mDateSize + BAR_HEIGHT + (2 * SEPARATION);
-            dateXOffset += mIsRound ? (SEPARATION + 2) : (SEPARATION / 2) + 1;
-            canvas.drawText(mDateStr, dateXOffset, dateYOffset, mDatePaint);
+        // Drawn straight to the output canvas, the next blit of the back buffer covers it again
+        private void drawOverlay(Canvas canvas) {
+            int x = mSurfaceWidth / 2;
+            int y = overlayBaseline();
+
+            mOverlayText.setLength(0);
+            mOverlayText.append("draw p50 ").append(mFrameStats.percentileUs(false, 50))
+                    .append(" p99 ").append(mFrameStats.percentileUs(false, 99)).append(" us");
+            canvas.drawText(mOverlayText, 0, mOverlayText.length(), x, y, mOverlayPaint);
+
+            mOverlayText.setLength(0);
+            mOverlayText.append("latency p50 ").append(mFrameStats.percentileUs(true, 50))
+                    .append(" max ").append(mFrameStats.percentileUs(true, 100)).append(" us");
+            canvas.drawText(mOverlayText, 0, mOverlayText.length(), x, y + OVERLAY_LINE_HEIGHT, mOverlayPaint);
+
+            mOverlayText.setLength(0);
+            mOverlayText.append("inv/s ").append(mFrameStats.lastInvalidatesPerSecond())
+                    .append(" missed ").append(mFrameStats.transitionMissed())
+                    .append('/').append(mFrameStats.transitionFrames());
+            canvas.drawText(mOverlayText, 0, mOverlayText.length(), x, y + (2 * OVERLAY_LINE_HEIGHT), mOverlayPaint);
+        }
 
-            mBar.draw(canvas);
+        // Of the overlay's first line
+        private int overlayBaseline() {
+            return mSurfaceHeight / 6;
         }
 
-        // Either on tick or on timer update
-        private void onTimeUpdate(long millis) {
-            mCalendar.setTimeInMillis(millis);
+        // No beams or bar, just the cached outline frame, shifted around for burn-in protection
+        private void drawAmbient(Canvas canvas) {
+            canvas.drawColor(Color.BLACK);
+            if (!mAmbientFrameValid) buildAmbientFrame();
+            // Black until laid out, as the interactive scene draws nothing before its layout
+            if (!mAmbientFrameValid) return;
+
+            int dx = 0, dy = 0;
+            if (mBurnInProtection) {
+                // Walk a 3x3 grid of offsets, one step per minute
+                int minute = mController.time.minute;
+                dx = ((minute % 3) - 1) * BURN_IN_SHIFT;
+                dy = (((minute / 3) % 3) - 1) * BURN_IN_SHIFT;
+            }
 
-            int seconds = mCalendar.get(Calendar.SECOND);
-            switch (seconds) {
-                case 0:
-                    updateTimeDisplay();
-                    invalidate();
-                    break;
-                case 1:
-                    mBar.animateReturn();
+            canvas.drawBitmap(mAmbientFrame, dx, dy, null);
+        }
 
-                    for (int i = 0; i < NUM_DIGITS; i++) {
-                        mDigits[i].color = Color.WHITE;
-                    }
-                    break;
-                case 15:
-                    mBar.animateFirstQuarter();
-                    break;
-                case 30:
-                    mBar.animateSecondQuarter();
-                    break;
-                case 45:
-                    mBar.animateThirdQuarter();
-                    break;
-                case 59:
-                    mBar.animateFourthQuarter();
-                    beginMinuteAnimation();
-                default: break;
+        // Left invalid before onSurfaceChanged() and the insets, or until a resize is laid out
+        private void buildAmbientFrame() {
+            if (mLayout == null || mSurfaceWidth == 0 || mSurfaceHeight == 0
+                    || mLayout.width != mSurfaceWidth || mLayout.height != mSurfaceHeight) return;
+
+            if (mAmbientFrame == null || mAmbientFrame.getWidth() != mSurfaceWidth
+                    || mAmbientFrame.getHeight() != mSurfaceHeight) {
+                if (mAmbientFrame != null) mAmbientFrame.recycle();
+                mAmbientFrame = Bitmap.createBitmap(mSurfaceWidth, mSurfaceHeight, Bitmap.Config.ARGB_8888);
+                mAmbientCanvas = new Canvas(mAmbientFrame);
+            }
+            mAmbientFrame.eraseColor(Color.BLACK);
+
+            // Low-bit displays can't show antialiasing or grays
+            mAmbientTimePaint.setAntiAlias(!mLowBitAmbient);
+            mAmbientDatePaint.setAntiAlias(!mLowBitAmbient);
+            mAmbientDatePaint.setColor(mLowBitAmbient ? Color.WHITE : BeamUpScene.DIRTY_WHITE);
+
+            for (int i = 0; i < NUM_DIGITS; i++) {
+                int value = mScene.digits[i].value;
+                mAmbientCanvas.drawText(TIME_CHARS, value, value + 1, mLayout.digitX(i), mLayout.baseline,
+                        mAmbientTimePaint);
+            }
+            int colon = TIME_CHARS.indexOf(':');
+            mAmbientCanvas.drawText(TIME_CHARS, colon, colon + 1, mLayout.colonX, mLayout.baseline, mAmbientTimePaint);
+            mAmbientCanvas.drawText(mScene.date, 0, mScene.date.length(), mLayout.dateX, mLayout.dateY,
+                    mAmbientDatePaint);
+            mAmbientCanvas.drawText(mScene.companion, 0, mScene.companion.length(), mScene.companionX(),
+                    mLayout.companionY, mAmbientDatePaint);
+            for (int i = 0; i < mComplications.length; i++) {
+                if (mScene.complications[i]) {
+                    mComplications[i].draw(mAmbientCanvas, mLayout.slotLeft(i), mLayout.slotTop(i));
+                }
             }
 
-            // Enable for testing beam alignment
-//            for (int i = 0; i < NUM_DIGITS; i += 1) {
-//                mBeams[i].bounds.bottom = 1000;
-//                mBeams[i].color = DIRTY_WHITE;
-//                mDigits[i].value = 8;
-//            }
+            // Seconds would be stale within the minute, only zone rows are shown
+            for (ClockRow row : mScene.rows) {
+                if (!row.visible || row.kind != ClockRow.KIND_ZONE) continue;
+
+                for (int i = 0; i < row.digits.length; i++) {
+                    int value = row.digits[i].value;
+                    mAmbientCanvas.drawText(TIME_CHARS, value, value + 1, row.digits[i].x, row.baseline,
+                            mAmbientDatePaint);
+                }
+                mAmbientCanvas.drawText(TIME_CHARS, colon, colon + 1, row.colonX, row.baseline, mAmbientDatePaint);
+            }
+
+            mAmbientFrameValid = true;
         }
 
         @Override
@@ -179,6 +619,11 @@ public class BeamUpWatchface extends CanvasWatchFaceService {
 
             mSurfaceWidth = width;
             mSurfaceHeight = height;
+            mSurfaceBounds.set(0, 0, width, height);
+            mSurfaceFresh = true;
+            mController.setSurfaceWidth(width);
+            if (mInputLog != null) mInputLog.surface(width, height);
+            updateBackBuffer();
             calculateSizeMetrics();
         }
 
@@ -187,46 +632,160 @@ public class BeamUpWatchface extends CanvasWatchFaceService {
             super.onApplyWindowInsets(insets);
 
             mIsRound = insets.isRound();
+            mChinHeight = insets.getSystemWindowInsetBottom();
+            mHasInsets = true;
+            if (mInputLog != null) mInputLog.insets(mIsRound, mChinHeight);
             calculateSizeMetrics();
         }
 
-        private boolean[] updateDigitChanges() {
-            boolean[] changes = new boolean[4];
-            if ((mDigits[0].value == 0 && mDigits[1].value == 9 && mDigits[2].value == 5 && mDigits[3].value == 9) ||
-                    (mDigits[0].value == 1 && mDigits[1].value == 9 && mDigits[2].value == 5 && mDigits[3].value == 9) ||
-                    (mDigits[0].value == 2 && mDigits[1].value == 3 && mDigits[2].value == 5 && mDigits[3].value == 9)) {
-                changes[0] = true;
+        // Every animation at the same frame time, true while any is still running
+        private boolean onAnimationFrame(long frameTimeMs) {
+            boolean running = mController.onAnimationFrame(frameTimeMs);
+            if (!mScene.dirty.isEmpty()) {
+                mFrameStats.onAnimationUpdate(System.nanoTime());
+            } else {
+                mFrameStats.onIdleFrame();
+            }
+            return running;
+        }
+
+        // Drawn by the frame pacer at the next vsync, along with any running animation
+        @Override
+        public void invalidate() {
+            mFrameStats.onInvalidate(System.nanoTime());
+            mFramePacer.requestDraw();
+        }
+
+        @Override
+        public void onSurfaceRedrawNeeded(SurfaceHolder holder) {
+            mSurfaceFresh = true;
+            drawFrame();
+        }
+
+        // Both backends lock the surface here rather than in the service, so the pacer owns every frame
+        private void drawFrame() {
+            Surface surface = getSurfaceHolder().getSurface();
+            if (!surface.isValid()) return;
+
+            Canvas canvas = mUseHardwareCanvas ? surface.lockHardwareCanvas() : surface.lockCanvas(lockBounds());
+            try {
+                onDraw(canvas, mSurfaceBounds);
+            } finally {
+                surface.unlockCanvasAndPost(canvas);
+            }
+            if (mRenderCacheUnsaved) saveRenderCache();
+        }
+
+        // Only the pixel copy happens here, the file is written on the cache thread
+        private void saveRenderCache() {
+            mRenderCacheUnsaved = false;
+            RenderCache.Entry entry = new RenderCache.Entry();
+            entry.timeSize = mTimeSize;
+            entry.colonSize = mColonSize;
+            entry.dateSize = mDateSize;
+            entry.timeAtlas = mTimeAtlas;
+            entry.dateAtlas = mDateAtlas;
+            mRenderCacheHandler.post(mRenderCache.prepareSave(mSurfaceWidth, mSurfaceHeight, mIsRound, entry));
+        }
+
+        // The union of the scene's damage, the surface keeps the rest of the last frame. Null locks
+        // it whole: when it is new or in ambient, which is drawn straight to it. The overlay is too,
+        // so its rows are locked with the damage and the blit wipes the last frame's text.
+        // lockCanvas() may grow the bounds, e.g. for a buffer that missed the last frame, and the
+        // blit covers whatever it returns
+        private Rect lockBounds() {
+            DirtyRegion dirty = mScene.dirty;
+            if (mSurfaceFresh || mBackBuffer == null || isInAmbientMode() || dirty.isFull()) {
+                mSurfaceFresh = false;
+                mLockBounds.set(mSurfaceBounds);
+                return null;
             }
-            if (mDigits[2].value == 5 && mDigits[3].value == 9) {
-                changes[1] = true;
+
+            mLockBounds.setEmpty();
+            for (int i = 0; i < dirty.size(); i++) {
+                mLockBounds.union(dirty.left(i), dirty.top(i), dirty.right(i), dirty.bottom(i));
             }
-            if (mDigits[3].value == 9) {
-                changes[2] = true;
+            if (mShowOverlay) {
+                // From the first line's ascent to below the last one's descent, across the screen
+                int y = overlayBaseline();
+                mLockBounds.union(0, y - OVERLAY_LINE_HEIGHT, mSurfaceWidth,
+                        y + (2 * OVERLAY_LINE_HEIGHT) + (OVERLAY_LINE_HEIGHT / 2));
             }
-            changes[3] = true;
-            return changes;
+            return mLockBounds;
         }
 
-        private void beginMinuteAnimation() {
-            boolean[] changes = updateDigitChanges();
-            for (int i = 0; i < NUM_DIGITS; i++) {
-                if (changes[i])  {
-                    mBeams[i].beginAnimationSequence();
-                    mDigits[i].beginAnimationSequence();
+        @Override
+        public void onTapCommand(int tapType, int x, int y, long eventTime) {
+            if (tapType != TAP_TYPE_TAP) return;
+
+            int slot = mLayout != null ? mLayout.slotAt(x, y) : -1;
+            PendingIntent tapAction = slot >= 0 && mScene.complications[slot]
+                    ? mComplications[slot].getTapAction() : null;
+            if (tapAction != null) {
+                try {
+                    tapAction.send();
+                } catch (PendingIntent.CanceledException e) {
+                    // The provider went away, its next update replaces the data
                 }
+                return;
             }
+
+            if (!BuildConfig.DEBUG) return;
+            mShowOverlay = !mShowOverlay;
+            // Whole surface from the back buffer, which never has the overlay in it
+            mSurfaceFresh = true;
+            invalidate();
+        }
+
+        @Override
+        public void onComplicationDataUpdate(int complicationId, ComplicationData data) {
+            mComplications[complicationId].setData(data);
+            updateComplication(complicationId);
+            if (isVisible()) invalidate();
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            onTimeUpdate(System.currentTimeMillis());
+
+            long millis = mClock.currentTimeMillis(), uptimeMs = SystemClock.uptimeMillis();
+            if (mInputLog != null) mInputLog.tick(millis, uptimeMs, isInAmbientMode());
+            mController.onTimeTick(millis, uptimeMs, isInAmbientMode());
+        }
+
+        @Override
+        public void onPropertiesChanged(Bundle properties) {
+            super.onPropertiesChanged(properties);
+
+            mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            mAmbientFrameValid = false;
+            updateComplicationsAmbient();
         }
 
         @Override
         public void onDestroy() {
             super.onDestroy();
             mUpdateHandler.removeMessages(MSG_UPDATE_TIME);
+            mUpdateHandler.removeMessages(MSG_COMPANION_FLUSH);
+            mUpdateHandler.removeMessages(MSG_THEME_CHANGED);
+            mUpdateHandler.removeMessages(MSG_RECORD_START);
+            mUpdateHandler.removeMessages(MSG_RECORD_STOP);
+            mUpdateHandler.removeMessages(MSG_BAR_FRAME);
+            mUpdateHandler.removeMessages(MSG_GLYPH_ATLAS_ON);
+            mUpdateHandler.removeMessages(MSG_GLYPH_ATLAS_OFF);
+            // Lets a write in progress finish, a partial file is never renamed into place
+            mRenderCacheThread.quitSafely();
+            mWearableCompanion.stop();
+            mLocalCompanion.stop();
+            mChoreographer.removeFrameCallback(mFrameCallback);
+            mFramePacer.cancel();
+            mController.cancel();
+            if (mTimeAtlas != null) mTimeAtlas.recycle();
+            if (mDateAtlas != null) mDateAtlas.recycle();
+            if (mBackBuffer != null) mBackBuffer.recycle();
+            if (mAmbientFrame != null) mAmbientFrame.recycle();
+            for (ComplicationSlot slot : mComplications) slot.recycle();
         }
 
         @Override
@@ -234,47 +793,144 @@ public class BeamUpWatchface extends CanvasWatchFaceService {
             super.onVisibilityChanged(visible);
 
             if (visible) {
-                long millis = System.currentTimeMillis();
-                mCalendar.setTimeInMillis(millis);
-                while (mCalendar.get(Calendar.SECOND) % 15 != 0) {
-                    millis -= 500;
-                    mCalendar.setTimeInMillis(millis);
-                }
-                onTimeUpdate(millis);
+                loadRows();
+                loadBar();
+                loadTheme();
+            }
+            if (visible && mLayout == null) {
+                // No insets were dispatched, lay out for a square screen rather than show nothing
+                mHasInsets = true;
+                calculateSizeMetrics();
             }
 
-            mCalendar.setTimeZone(TimeZone.getDefault());
+            // Both may have changed while the face was hidden
+            TimeZone zone = TimeZone.getDefault();
+            boolean is24Hour = DateFormat.is24HourFormat(BeamUpWatchface.this);
+            mController.setTimeZone(zone, is24Hour);
+
+            long millis = mClock.currentTimeMillis(), uptimeMs = SystemClock.uptimeMillis();
+            if (mInputLog != null) {
+                mInputLog.zone(zone.getID(), is24Hour);
+                mInputLog.visible(visible, millis, uptimeMs);
+            }
             updateTimerIsRunning();
-            updateTimeDisplay();
-            invalidate();
+            mController.onVisibilityChanged(visible, millis, uptimeMs);
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
+            if (mInputLog != null) mInputLog.ambient(inAmbientMode);
             updateTimerIsRunning();
+            updateComplicationsAmbient();
+            mController.onAmbientModeChanged(inAmbientMode);
         }
 
-        private String getDayStr(int day) {
-            switch (day) {
-                case Calendar.MONDAY: return "MON";
-                case Calendar.TUESDAY: return "TUE";
-                case Calendar.WEDNESDAY: return "WED";
-                case Calendar.THURSDAY: return "THU";
-                case Calendar.FRIDAY: return "FRI";
-                case Calendar.SATURDAY: return "SAT";
-                case Calendar.SUNDAY: return "SUN";
-                default: return "???";
+        private void loadRows() {
+            SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+            String zoneId = prefs.getString(PREF_ZONE_ROW, "");
+            boolean secondsRow = prefs.getBoolean(PREF_SECONDS_ROW, false);
+            if (zoneId.equals(mZoneRowId) && secondsRow == mSecondsRow) return;
+
+            mZoneRowId = zoneId;
+            mSecondsRow = secondsRow;
+            mController.setRows(zoneId, secondsRow);
+            if (mInputLog != null) mInputLog.rows(zoneId, secondsRow);
+            mTickScheduler = new TickScheduler(mClock, secondsRow ? TickScheduler.EVERY_SECOND : TickScheduler.FACE_SECONDS);
+        }
+
+        private void loadBar() {
+            int fps = getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getInt(PREF_BAR_FPS, 0);
+            if (fps == mBarFps) return;
+
+            mBarFps = fps;
+            if (mInputLog != null) mInputLog.bar(fps);
+            mController.setBarFrameRate(fps);
+        }
+
+        private void updateComplication(int slot) {
+            if (!mComplications[slot].update(mClock.currentTimeMillis())) return;
+
+            mScene.setComplication(slot, mComplications[slot].hasContent());
+            mAmbientFrameValid = false;
+            if (mInputLog != null) mInputLog.complication(slot, mComplications[slot].hasContent());
+        }
+
+        // Text in the row color and titles in the date's, rasterized again at each step of a fade
+        private void updateComplicationColors() {
+            Palette palette = mScene.palette;
+            long millis = mClock.currentTimeMillis();
+            for (int i = 0; i < mComplications.length; i++) {
+                mComplications[i].setColors(palette.row, palette.date);
+                // Not recorded, a replay recolors the scene from the theme events
+                if (mComplications[i].update(millis)) mScene.setComplication(i, mComplications[i].hasContent());
+            }
+        }
+
+        // Ambient slots drop the range bar and antialiasing, so they are rasterized again
+        private void updateComplicationsAmbient() {
+            for (int i = 0; i < mComplications.length; i++) {
+                mComplications[i].setAmbient(isInAmbientMode(), mLowBitAmbient);
+                updateComplication(i);
+            }
+        }
+
+        private void onCompanionFlush() {
+            if (!mCompanion.flush()) return;
+
+            mScene.setCompanion(mCompanion.label);
+            mPictureRenderer.invalidateStatic();
+            if (mInputLog != null) mInputLog.companion(mCompanion.label);
+            mAmbientFrameValid = false;
+            if (isVisible()) invalidate();
+        }
+
+        // Starts with the state so far, a replay sets the face up from it as the recording began
+        private void startRecording() {
+            InputLog log = new InputLog();
+            if (mSurfaceWidth > 0) log.surface(mSurfaceWidth, mSurfaceHeight);
+            if (mHasInsets) log.insets(mIsRound, mChinHeight);
+            log.zone(TimeZone.getDefault().getID(), DateFormat.is24HourFormat(BeamUpWatchface.this));
+            log.bar(Math.max(0, mBarFps));
+            if (mZoneRowId != null) log.rows(mZoneRowId, mSecondsRow);
+            log.theme(mPalette.name, false, SystemClock.uptimeMillis());
+            log.companion(mScene.companion);
+            for (int i = 0; i < mComplications.length; i++) log.complication(i, mScene.complications[i]);
+            log.ambient(isInAmbientMode());
+            log.visible(isVisible(), mClock.currentTimeMillis(), SystemClock.uptimeMillis());
+            mInputLog = log;
+        }
+
+        private void stopRecording() {
+            if (mInputLog == null) return;
+
+            InputLog log = mInputLog;
+            mInputLog = null;
+            Writer writer = null;
+            try {
+                writer = new FileWriter(new File(getFilesDir(), INPUT_LOG_NAME));
+                log.writeTo(writer);
+            } catch (IOException e) {
+                // Out of space, the next recording tries again
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        // Nothing left to write
+                    }
+                }
             }
         }
 
-        private void updateTimeDisplay() {
-            String timeStr = String.format("%02d:%02d", mCalendar.get(Calendar.HOUR_OF_DAY), mCalendar.get(Calendar.MINUTE));
-            mDigits[0].value = Integer.parseInt(String.valueOf(timeStr.charAt(0)));
-            mDigits[1].value = Integer.parseInt(String.valueOf(timeStr.charAt(1)));
-            mDigits[2].value = Integer.parseInt(String.valueOf(timeStr.charAt(3))); // skip :
-            mDigits[3].value = Integer.parseInt(String.valueOf(timeStr.charAt(4)));
-            mDateStr = String.format("%s %02d", getDayStr(mCalendar.get(Calendar.DAY_OF_WEEK)), mCalendar.get(Calendar.DAY_OF_MONTH));
+        // Compared by switching at runtime, each path gets its own run of frame stats
+        private void setUseGlyphAtlas(boolean useGlyphAtlas) {
+            if (useGlyphAtlas == mUseGlyphAtlas) return;
+
+            mUseGlyphAtlas = useGlyphAtlas;
+            mFrameStats.reset(useGlyphAtlas ? TEXT_PATH_ATLAS : TEXT_PATH_DRAW_TEXT);
+            mScene.dirty.addAll();
+            if (isVisible()) invalidate();
         }
 
         private boolean isInteractive() {
@@ -287,13 +943,14 @@ public class BeamUpWatchface extends CanvasWatchFaceService {
         }
 
         private void onInteractiveUpdate() {
-            invalidate();
-            if (isInteractive()) {
-                onTimeUpdate(System.currentTimeMillis());
+            if (!isInteractive()) return;
 
-                long delayMs = UPDATE_RATE_MS - (System.currentTimeMillis() % UPDATE_RATE_MS);
-                mUpdateHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
-            }
+            long millis = mClock.currentTimeMillis(), uptimeMs = SystemClock.uptimeMillis();
+            if (mInputLog != null) mInputLog.update(millis, uptimeMs);
+            mController.onInteractiveUpdate(millis, uptimeMs);
+
+            // Sleep until the next second that has something to show
+            mUpdateHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, mTickScheduler.getDelayToNextEvent());
         }
 
 
@@ -306,221 +963,75 @@ public class BeamUpWatchface extends CanvasWatchFaceService {
         //--------- Transitions --------------------------------
         // Time (59s) | Event
         // T+0         | Beam DOWN (300)
-        // T+500       | Digit UP (300)
+        // T+450       | Digit UP (300)
         //   DUP+400   | Digit Down (300)
+        //   DDN+200   | Digit color restored
         // BDN+1400    | Beam UP (300)
+        //
+        // Compiled into the keyframe table in MinuteTimeline, and evaluated once per frame from the
+        // transition start time in FaceController.onAnimationFrame(), once per vsync by the FramePacer.
 
-        private class BeamUpBeam {
-            ValueAnimator downAnimation, upAnimation;
-            ValueAnimator.AnimatorUpdateListener updateListener;
-            Rect bounds = new Rect();
-            Paint paint = new Paint();
-            int index;
-            int color = Color.WHITE;
-
-            BeamUpBeam(int index) {
-                this.index = index;
-
-                updateMetrics();
-                paint.setStyle(Paint.Style.FILL);
-
-                updateListener = new ValueAnimator.AnimatorUpdateListener() {
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animation) {
-                        bounds.bottom = (int) animation.getAnimatedValue();
-                        if (isInteractive()) invalidate();
-                    }
-                };
-            }
+        // Routes scene draw calls to a Canvas, through the glyph atlases and the theme's paints
+        private class CanvasTarget implements BeamUpScene.Target {
+            Canvas canvas;
 
-            void updateMetrics() {
-                int x = mTimeBounds.left + 2;
-                if (!mIsRound) {
-                    x -= (SEPARATION - 2);
-                }
-                switch (this.index) {
-                    case 1:
-                        x += mTimeSize + (1 * SEPARATION);
-                        break;
-                    case 2:
-                        x += (2 * mTimeSize) + (3 * SEPARATION) + mColonSize;
-                        break;
-                    case 3:
-                        x += (3 * mTimeSize) + (4 * SEPARATION) + mColonSize;
-                        break;
-                    default: break;
-                }
-                bounds.left = x;
-                bounds.right = bounds.left + mTimeSize;
-            }
-
-            void beginAnimationSequence() {
-                downAnimation = ValueAnimator.ofInt(bounds.bottom, mTimeBounds.top + mTimeSize);
-                downAnimation.setStartDelay(0);
-                downAnimation.setDuration(BEAM_ANIM_DURATION);
-                downAnimation.addListener(new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationEnd(Animator animation) {
-                        super.onAnimationEnd(animation);
-
-                        // Schedule up
-                        upAnimation = ValueAnimator.ofInt(bounds.bottom, 0);
-                        upAnimation.setStartDelay(1400);
-                        upAnimation.setDuration(BEAM_ANIM_DURATION);
-                        beginAnimation(upAnimation);
-                    }
-                });
-                beginAnimation(downAnimation);
+            @Override
+            public void clipTo(int left, int top, int right, int bottom) {
+                canvas.save();
+                canvas.clipRect(left, top, right, bottom);
             }
 
-            void beginAnimation(ValueAnimator animation) {
-                animation.start();
-                animation.addUpdateListener(updateListener);
+            @Override
+            public void clearClip() {
+                canvas.restore();
             }
 
-            void draw(Canvas canvas) {
-                paint.setColor(color);
-                canvas.drawRect(bounds, paint);
+            @Override
+            public void fill(int color) {
+                canvas.drawColor(color);
             }
-        }
 
-        private class BeamUpDigit {
-            ValueAnimator downAnimation, upAnimation;
-            ValueAnimator.AnimatorUpdateListener updateListener;
-            int index, color, value, yPosition;
-
-            BeamUpDigit(int index) {
-                color = Color.WHITE;
-                this.index = index;
-
-                updateListener = new ValueAnimator.AnimatorUpdateListener() {
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animation) {
-                        yPosition = (int) animation.getAnimatedValue();
-                        if (isInteractive()) invalidate();
-                    }
-                };
+            @Override
+            public void fillRect(float left, float top, float right, float bottom, int color) {
+                canvas.drawRect(left, top, right, bottom, mFillPaints.get(color));
             }
 
-            void beginAnimationSequence() {
-                upAnimation = ValueAnimator.ofInt(yPosition, -mTimeSize);
-                upAnimation.setStartDelay(450);
-                upAnimation.setDuration(DIGIT_ANIM_DURATION);
-
-                upAnimation.addListener(new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationStart(Animator animation) {
-                        super.onAnimationStart(animation);
-
-                        color = Color.BLACK;
-                    }
-
-                    @Override
-                    public void onAnimationEnd(Animator animation) {
-                        super.onAnimationEnd(animation);
-
-                        // Schedule down
-                        downAnimation = ValueAnimator.ofInt(yPosition, mTimeBounds.top + mTimeSize);
-                        downAnimation.setStartDelay(400);
-                        downAnimation.setDuration(DIGIT_ANIM_DURATION);
-                        downAnimation.addListener(new AnimatorListenerAdapter() {
-                            @Override
-                            public void onAnimationEnd(Animator animation) {
-                                super.onAnimationEnd(animation);
-
-                                mUpdateHandler.postDelayed(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        color = Color.WHITE;
-                                    }
-                                }, 200);
-                            }
-                        });
-                        beginAnimation(downAnimation);
-                    }
-                });
-                beginAnimation(upAnimation);
-            }
-
-            void beginAnimation(ValueAnimator animation) {
-                animation.start();
-                animation.addUpdateListener(updateListener);
-            }
-
-            void draw(Canvas canvas) {
-                mTimePaint.setColor(color);
-
-                int x = mTimeBounds.left + mTimeSize + (mIsRound ? (3 * SEPARATION) : (2 * SEPARATION));
-                switch (this.index) {
-                    case 1:
-                        x += mTimeSize + SEPARATION;
-                        break;
-                    case 2:
-                        x += (2 * mTimeSize) + (3 * SEPARATION) + mColonSize;
-                        break;
-                    case 3:
-                        x += (3 * mTimeSize) + (4 * SEPARATION) + mColonSize;
-                        break;
-                    default: break;
+            @Override
+            public void drawTimeGlyph(char c, int rightX, int baselineY, int color) {
+                Paint paint = mTimePaints.get(color);
+                if (mUseGlyphAtlas) {
+                    mTimeAtlas.drawGlyph(canvas, c, rightX, baselineY, paint);
+                } else {
+                    int index = TIME_CHARS.indexOf(c);
+                    canvas.drawText(TIME_CHARS, index, index + 1, rightX, baselineY, paint);
                 }
-
-                canvas.drawText(String.valueOf(value), x, yPosition, mTimePaint);
             }
-        }
-
-        private class BeamUpBar {
 
-            Rect bounds = new Rect();
-            Paint paint = new Paint();
-            ValueAnimator mAnimation = null;
-            private ValueAnimator.AnimatorUpdateListener mAnimationListener = new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    bounds.right = (int) animation.getAnimatedValue();
-                    if (isInteractive()) invalidate();
+            @Override
+            public void drawDateGlyph(char c, int rightX, int baselineY, int color) {
+                Paint paint = mDatePaints.get(color);
+                if (mUseGlyphAtlas) {
+                    mDateAtlas.drawGlyph(canvas, c, rightX, baselineY, paint);
+                } else {
+                    int index = DATE_CHARS.indexOf(c);
+                    canvas.drawText(DATE_CHARS, index, index + 1, rightX, baselineY, paint);
                 }
-            };
-
-            BeamUpBar() {
-                paint.setColor(Color.WHITE);
-                paint.setStyle(Paint.Style.FILL);
-            }
-
-            void draw(Canvas canvas) {
-                canvas.drawRect(bounds, paint);
-            }
-
-            void animateFirstQuarter() {
-                mAnimation = ValueAnimator.ofInt(bounds.right, mSurfaceWidth / 4);
-                beginAnimation();
-            }
-
-            void animateSecondQuarter() {
-                mAnimation = ValueAnimator.ofInt(bounds.right, mSurfaceWidth / 2);
-                beginAnimation();
-            }
-
-            void animateThirdQuarter() {
-                mAnimation = ValueAnimator.ofInt(bounds.right, (3 * mSurfaceWidth) / 4);
-                beginAnimation();
             }
 
-            void animateFourthQuarter() {
-                mAnimation = ValueAnimator.ofInt(bounds.right, mSurfaceWidth);
-                beginAnimation();
+            @Override
+            public void drawComplication(int slot, int left, int top, int right, int bottom) {
+                mComplications[slot].draw(canvas, left, top);
             }
 
-            void animateReturn() {
-                mAnimation = ValueAnimator.ofInt(bounds.right, 0);
-                beginAnimation();
-            }
-
-            private void beginAnimation() {
-                mAnimation.setDuration(BAR_ANIM_DURATION);
-                mAnimation.start();
-                mAnimation.addUpdateListener(mAnimationListener);
+            @Override
+            public void drawDateText(CharSequence text, int rightX, int baselineY, int color) {
+                Paint paint = mDatePaints.get(color);
+                if (mUseGlyphAtlas) {
+                    mDateAtlas.drawText(canvas, text, rightX, baselineY, paint);
+                } else {
+                    canvas.drawText(text, 0, text.length(), rightX, baselineY, paint);
+                }
             }
-
         }
 
     }
@@ -535,7 +1046,33 @@ public class BeamUpWatchface extends CanvasWatchFaceService {
 
         @Override
         public void handleMessage(Message msg) {
-            if (engine != null) engine.onInteractiveUpdate();
+            if (engine == null) return;
+
+            switch (msg.what) {
+                case MSG_UPDATE_TIME:
+                    engine.onInteractiveUpdate();
+                    break;
+                case MSG_COMPANION_FLUSH:
+                    engine.onCompanionFlush();
+                    break;
+                case MSG_THEME_CHANGED:
+                    engine.loadTheme();
+                    break;
+                case MSG_RECORD_START:
+                    engine.startRecording();
+                    break;
+                case MSG_RECORD_STOP:
+                    engine.stopRecording();
+                    break;
+                case MSG_BAR_FRAME:
+                    engine.mFramePacer.requestFrame();
+                    break;
+                case MSG_GLYPH_ATLAS_ON:
+                case MSG_GLYPH_ATLAS_OFF:
+                    engine.setUseGlyphAtlas(msg.what == MSG_GLYPH_ATLAS_ON);
+                    break;
+                default: break;
+            }
         }
 
     }
@@ -0,0 +1,88 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.util.TimeZone;
+
+/**
+ * An extra line of digits under the date, either the time in another zone or the seconds. Rows
+ * keep their own time and digit state, but are drawn from the scene's date glyphs and animated
+ * from the same transition clock as the main time, with beams hanging from the top of the row.
+ */
+final class ClockRow {
+
+    static final int KIND_ZONE = 0, KIND_SECONDS = 1;
+
+    final int kind;
+    final BeamUpScene.Digit[] digits;
+    final BeamUpScene.Beam[] beams;
+
+    // Own zone and next minute for KIND_ZONE, seconds rows read the main time
+    final TimeDecomposer time, next;
+
+    // Set by BeamUpScene.layout(), rows that don't fit above the bottom inset aren't drawn
+    int top, baseline, colonX;
+    boolean visible;
+
+    // Mask of digits in the running minute transition
+    int transitionDigits;
+
+    private ClockRow(int kind, int numDigits, TimeZone zone) {
+        this.kind = kind;
+        digits = new BeamUpScene.Digit[numDigits];
+        beams = new BeamUpScene.Beam[numDigits];
+        for (int i = 0; i < numDigits; i++) {
+            digits[i] = new BeamUpScene.Digit();
+            beams[i] = new BeamUpScene.Beam();
+        }
+
+        if (zone != null) {
+            time = new TimeDecomposer(zone);
+            next = new TimeDecomposer(zone);
+        } else {
+            time = null;
+            next = null;
+        }
+    }
+
+    static ClockRow forZone(TimeZone zone) {
+        return new ClockRow(KIND_ZONE, BeamUpScene.NUM_DIGITS, zone);
+    }
+
+    static ClockRow seconds() {
+        return new ClockRow(KIND_SECONDS, 2, null);
+    }
+
+    // Seconds change too often for the two second minute transition, they just swap
+    boolean animates() {
+        return kind == KIND_ZONE;
+    }
+
+    boolean hasColon() {
+        return kind == KIND_ZONE;
+    }
+
+    void setTime(long millis) {
+        if (time != null) time.setTime(millis);
+    }
+
+    void set24Hour(boolean is24Hour) {
+        if (time == null) return;
+
+        time.is24Hour = is24Hour;
+        next.is24Hour = is24Hour;
+    }
+
+    void prefetch(long nextMinuteMillis) {
+        if (next != null) next.setTime(nextMinuteMillis);
+    }
+
+    // Digits that will change, once prefetch() has seen the next minute
+    int changedDigits() {
+        return next != null ? DigitRollover.changedDigits(digits, next) : 0;
+    }
+
+    int digitValue(int index, TimeDecomposer mainTime) {
+        if (kind == KIND_SECONDS) return index == 0 ? mainTime.second / 10 : mainTime.second % 10;
+        return time.timeDigit(index);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.wordpress.ninedof.beamupwear;
+
+/**
+ * Transport for values sent by the companion phone. Updates are deltas: only fields present in a
+ * message are delivered, anything missing keeps its last value.
+ */
+interface CompanionChannel {
+
+    interface Listener {
+        void onFieldChanged(int field, int value);
+    }
+
+    void start(Listener listener);
+
+    void stop();
+
+}
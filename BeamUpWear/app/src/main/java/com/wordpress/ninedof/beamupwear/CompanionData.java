@@ -0,0 +1,161 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.nio.CharBuffer;
+
+/**
+ * Latest values from the companion phone, coalesced so the face redraws at most once per
+ * interval however often the phone sends. Deltas are held as pending until flush(), which
+ * rebuilds the short label shown under the date only if a value actually changed.
+ */
+final class CompanionData {
+
+    static final int
+        FIELD_BATTERY = 0,           // Phone battery percent
+        FIELD_TEMPERATURE = 1,       // Whole degrees
+        FIELD_TEMPERATURE_UNIT = 2,  // 'C' or 'F'
+        FIELD_EVENT_START = 3,       // Next event, minutes into the day
+        NUM_FIELDS = 4;
+
+    // Keys in the phone's DataMap, and names accepted by dumpsys
+    static final String[] FIELD_KEYS = { "battery", "temperature", "temperature_unit", "event_start" };
+
+    static final int UNSET = Integer.MIN_VALUE;
+    // The longest label, "23:59 100% -99C", and the width FaceLayout reserves for it
+    static final int LABEL_CAPACITY = 5 + 1 + 4 + 1 + 4;
+
+    private final TickScheduler.Clock mClock;
+    private final long mIntervalMs;
+    private final int[] mValues = new int[NUM_FIELDS], mPending = new int[NUM_FIELDS];
+    private int mPendingMask;
+    private long mLastFlushMs = Long.MIN_VALUE / 2;
+
+    // e.g. "9:30 80% 12C", rewritten in place by flush()
+    private final char[] mLabelChars = new char[LABEL_CAPACITY];
+    private final CharBuffer mLabel = CharBuffer.wrap(mLabelChars);
+    final CharSequence label = mLabel;
+
+    CompanionData(TickScheduler.Clock clock, long intervalMs) {
+        mClock = clock;
+        mIntervalMs = intervalMs;
+        for (int i = 0; i < NUM_FIELDS; i++) mValues[i] = UNSET;
+        mLabel.limit(0);
+    }
+
+    static int fieldOf(String key) {
+        for (int i = 0; i < NUM_FIELDS; i++) {
+            if (FIELD_KEYS[i].equals(key)) return i;
+        }
+        return -1;
+    }
+
+    int getValue(int field) {
+        return mValues[field];
+    }
+
+    /**
+     * @return true if this is the first pending change, and a flush should be scheduled
+     */
+    boolean offer(int field, int value) {
+        if (field < 0 || field >= NUM_FIELDS) return false;
+
+        boolean first = mPendingMask == 0;
+        mPending[field] = value;
+        mPendingMask |= 1 << field;
+        return first;
+    }
+
+    long getDelayToFlush() {
+        return Math.max(0, (mLastFlushMs + mIntervalMs) - mClock.currentTimeMillis());
+    }
+
+    /**
+     * Apply everything offered since the last flush.
+     *
+     * @return true if any value, and so the label, changed
+     */
+    boolean flush() {
+        if (mPendingMask == 0) return false;
+
+        boolean changed = false;
+        for (int i = 0; i < NUM_FIELDS; i++) {
+            if ((mPendingMask & (1 << i)) == 0 || mValues[i] == mPending[i]) continue;
+
+            mValues[i] = mPending[i];
+            changed = true;
+        }
+        mPendingMask = 0;
+        mLastFlushMs = mClock.currentTimeMillis();
+
+        if (changed) rebuildLabel();
+        return changed;
+    }
+
+    private void rebuildLabel() {
+        int length = 0;
+
+        int event = mValues[FIELD_EVENT_START];
+        if (event != UNSET && event >= 0) {
+            length = appendTime(length, event / 60, event % 60);
+        }
+        int battery = mValues[FIELD_BATTERY];
+        if (battery != UNSET) {
+            length = appendNumber(length, battery, '%');
+        }
+        int temperature = mValues[FIELD_TEMPERATURE];
+        if (temperature != UNSET) {
+            length = appendNumber(length, temperature, mValues[FIELD_TEMPERATURE_UNIT] == 'F' ? 'F' : 'C');
+        }
+        mLabel.limit(length);
+    }
+
+    // Tokens are space separated, any that don't fit are dropped
+    private int tokenStart(int length, int tokenLength) {
+        int start = length == 0 ? 0 : length + 1;
+        if (start + tokenLength > LABEL_CAPACITY) return -1;
+
+        if (length > 0) mLabelChars[length] = ' ';
+        return start;
+    }
+
+    private int appendTime(int length, int hour, int minute) {
+        int start = tokenStart(length, countDigits(hour) + 3);
+        if (start < 0) return length;
+
+        int end = writeNumber(start, hour);
+        mLabelChars[end] = ':';
+        mLabelChars[end + 1] = (char) ('0' + (minute / 10));
+        mLabelChars[end + 2] = (char) ('0' + (minute % 10));
+        return end + 3;
+    }
+
+    private int appendNumber(int length, int value, char suffix) {
+        int start = tokenStart(length, countDigits(value) + 1);
+        if (start < 0) return length;
+
+        int end = writeNumber(start, value);
+        mLabelChars[end] = suffix;
+        return end + 1;
+    }
+
+    // Returns the index after the last character written
+    private int writeNumber(int start, int value) {
+        int end = start + countDigits(value);
+        int magnitude = Math.abs(value);
+        for (int i = end - 1; i >= start; i--) {
+            if (i == start && value < 0) {
+                mLabelChars[i] = '-';
+            } else {
+                mLabelChars[i] = (char) ('0' + (magnitude % 10));
+                magnitude /= 10;
+            }
+        }
+        return end;
+    }
+
+    private static int countDigits(int value) {
+        int count = value < 0 ? 2 : 1;
+        for (int v = Math.abs(value); v >= 10; v /= 10) count++;
+        return count;
+    }
+
+}
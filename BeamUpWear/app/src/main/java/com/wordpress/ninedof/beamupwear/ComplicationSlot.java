@@ -0,0 +1,184 @@
+package com.wordpress.ninedof.beamupwear;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+
+/**
+ * One complication, rasterized into its own bitmap so drawing it in a frame is a single blit.
+ * The text is shaped again only when the data or the ambient state changes, or when a time
+ * dependent text (like a countdown) reads differently at the minute.
+ */
+final class ComplicationSlot {
+
+    static final int[] SUPPORTED_TYPES = { ComplicationData.TYPE_SHORT_TEXT, ComplicationData.TYPE_RANGED_VALUE };
+
+    // Below this height only the text is shown, without the title
+    private static final int MIN_TITLE_HEIGHT = 40;
+    private static final int RANGE_HEIGHT = 3;
+
+    private final Context mContext;
+    private final Paint mTextPaint, mTitlePaint;
+    private final Paint mRangePaint = new Paint();
+
+    private ComplicationData mData;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private boolean mAmbient, mLowBitAmbient, mValid;
+    // Interactive colors, from the palette. Ambient stays white on black
+    private int mTextColor = Color.WHITE, mTitleColor = BeamUpScene.DIRTY_WHITE;
+
+    // What the bitmap currently shows
+    private CharSequence mText, mTitle;
+    private float mRange;
+
+    ComplicationSlot(Context context, Typeface typeface) {
+        mContext = context;
+
+        mTextPaint = new Paint();
+        mTextPaint.setTypeface(typeface);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTitlePaint = new Paint(mTextPaint);
+        mRangePaint.setStyle(Paint.Style.FILL);
+    }
+
+    void setSize(int width, int height) {
+        if (mBitmap != null) {
+            if (mBitmap.getWidth() == width && mBitmap.getHeight() == height) return;
+            mBitmap.recycle();
+        }
+
+        mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        boolean showTitle = height >= MIN_TITLE_HEIGHT;
+        mTextPaint.setTextSize(showTitle ? height / 2 : (3 * height) / 4);
+        mTitlePaint.setTextSize(height / 3);
+        mValid = false;
+    }
+
+    void setData(ComplicationData data) {
+        mData = data;
+        mValid = false;
+    }
+
+    void setColors(int textColor, int titleColor) {
+        if (textColor == mTextColor && titleColor == mTitleColor) return;
+
+        mTextColor = textColor;
+        mTitleColor = titleColor;
+        if (!mAmbient) mValid = false;
+    }
+
+    void setAmbient(boolean ambient, boolean lowBitAmbient) {
+        if (ambient == mAmbient && lowBitAmbient == mLowBitAmbient) return;
+
+        mAmbient = ambient;
+        mLowBitAmbient = lowBitAmbient;
+        mValid = false;
+    }
+
+    /**
+     * Rasterize again if anything shown has changed.
+     *
+     * @return true if the bitmap was redrawn
+     */
+    boolean update(long nowMs) {
+        if (mBitmap == null) return false;
+
+        CharSequence text = null, title = null;
+        float range = -1;
+        if (hasData(nowMs)) {
+            text = textOf(mData.getShortText(), nowMs);
+            if (mBitmap.getHeight() >= MIN_TITLE_HEIGHT) title = textOf(mData.getShortTitle(), nowMs);
+
+            // The bar would be burned in, so ambient shows only the text
+            if (mData.getType() == ComplicationData.TYPE_RANGED_VALUE && !mAmbient) {
+                float span = mData.getMaxValue() - mData.getMinValue();
+                range = span > 0 ? (mData.getValue() - mData.getMinValue()) / span : 0;
+            }
+        }
+        if (mValid && sameText(text, mText) && sameText(title, mTitle) && range == mRange) return false;
+
+        mText = text;
+        mTitle = title;
+        mRange = range;
+        rasterize();
+        mValid = true;
+        return true;
+    }
+
+    boolean hasContent() {
+        return mText != null;
+    }
+
+    PendingIntent getTapAction() {
+        return mData != null ? mData.getTapAction() : null;
+    }
+
+    void draw(Canvas canvas, int left, int top) {
+        canvas.drawBitmap(mBitmap, left, top, null);
+    }
+
+    void recycle() {
+        if (mBitmap != null) mBitmap.recycle();
+    }
+
+    private boolean hasData(long nowMs) {
+        if (mData == null || !mData.isActive(nowMs)) return false;
+
+        int type = mData.getType();
+        return type == ComplicationData.TYPE_SHORT_TEXT || type == ComplicationData.TYPE_RANGED_VALUE;
+    }
+
+    // Transparent around the text, so the slot shows whatever background the palette has
+    private void rasterize() {
+        mBitmap.eraseColor(Color.TRANSPARENT);
+        if (mText == null) return;
+
+        // Low-bit displays can't show antialiasing or grays
+        boolean lowBit = mAmbient && mLowBitAmbient;
+        mTextPaint.setAntiAlias(!lowBit);
+        mTextPaint.setColor(mAmbient ? Color.WHITE : mTextColor);
+        mTitlePaint.setAntiAlias(!lowBit);
+        mTitlePaint.setColor(lowBit ? Color.WHITE : mAmbient ? BeamUpScene.DIRTY_WHITE : mTitleColor);
+
+        int width = mBitmap.getWidth();
+        int height = mBitmap.getHeight();
+        float x = width / 2f;
+        float textBaseline = mTitle != null ? height / 2f : (7 * height) / 8f;
+        mCanvas.drawText(mText, 0, mText.length(), x, textBaseline, mTextPaint);
+        if (mTitle != null) {
+            mCanvas.drawText(mTitle, 0, mTitle.length(), x, height - RANGE_HEIGHT - 1, mTitlePaint);
+        }
+
+        // A thin bar along the bottom, like the seconds bar under the time
+        if (mRange >= 0) {
+            mRangePaint.setColor(mTitleColor);
+            mCanvas.drawRect(0, height - RANGE_HEIGHT, width * Math.min(1, mRange), height, mRangePaint);
+        }
+    }
+
+    private CharSequence textOf(ComplicationText text, long nowMs) {
+        if (text == null) return null;
+
+        CharSequence value = text.getText(mContext, nowMs);
+        return value == null || value.length() == 0 ? null : value;
+    }
+
+    private static boolean sameText(CharSequence a, CharSequence b) {
+        if (a == null || b == null) return a == b;
+        if (a.length() != b.length()) return false;
+
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) return false;
+        }
+        return true;
+    }
+
+}
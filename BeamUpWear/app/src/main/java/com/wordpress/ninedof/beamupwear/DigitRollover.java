@@ -0,0 +1,38 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out which time digits animate at the end of a minute by diffing what is on screen against
+ * the time at the start of the next minute. 12 and 24 hour clocks, DST shifts and jumps after the
+ * face slept all fall out of the same comparison. Results are bitmasks, bit i set for digit i.
+ */
+final class DigitRollover {
+
+    private static final long MS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private DigitRollover() { }
+
+    // Zone offsets are whole minutes, so local and UTC minutes start together
+    static long nextMinute(long millis) {
+        return millis - Math.floorMod(millis, MS_PER_MINUTE) + MS_PER_MINUTE;
+    }
+
+    /**
+     * @param shown Digits currently on screen
+     * @param next  Time at the start of the next minute
+     * @return Mask of the digits that differ in the next minute
+     */
+    static int changedDigits(BeamUpScene.Digit[] shown, TimeDecomposer next) {
+        int mask = 0;
+        for (int i = 0; i < shown.length; i++) {
+            if (shown[i].value != next.timeDigit(i)) mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    static boolean isChanged(int mask, int index) {
+        return (mask & (1 << index)) != 0;
+    }
+
+}
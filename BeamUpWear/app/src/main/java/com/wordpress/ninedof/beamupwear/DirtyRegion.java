@@ -0,0 +1,101 @@
+package com.wordpress.ninedof.beamupwear;
+
+/**
+ * Accumulates the areas damaged since the last frame as a handful of merged rects.
+ * Overlapping reports are unioned; once all slots are used, new damage is folded into
+ * whichever rect grows the least, so the region never allocates after construction.
+ */
+final class DirtyRegion {
+
+    private static final int MAX_RECTS = 4;
+
+    private final int[] mLeft = new int[MAX_RECTS], mTop = new int[MAX_RECTS],
+        mRight = new int[MAX_RECTS], mBottom = new int[MAX_RECTS];
+    private int mCount;
+    private boolean mFull = true;
+
+    void add(int left, int top, int right, int bottom) {
+        if (mFull || left >= right || top >= bottom) return;
+
+        // Merge into an overlapping rect if there is one
+        for (int i = 0; i < mCount; i++) {
+            if (left <= mRight[i] && mLeft[i] <= right && top <= mBottom[i] && mTop[i] <= bottom) {
+                union(i, left, top, right, bottom);
+                return;
+            }
+        }
+
+        if (mCount < MAX_RECTS) {
+            mLeft[mCount] = left;
+            mTop[mCount] = top;
+            mRight[mCount] = right;
+            mBottom[mCount] = bottom;
+            mCount++;
+            return;
+        }
+
+        // Out of slots, grow the rect that costs the least extra area
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < mCount; i++) {
+            long grown = area(Math.min(left, mLeft[i]), Math.min(top, mTop[i]),
+                    Math.max(right, mRight[i]), Math.max(bottom, mBottom[i]));
+            long growth = grown - area(mLeft[i], mTop[i], mRight[i], mBottom[i]);
+            if (growth < bestGrowth) {
+                bestGrowth = growth;
+                best = i;
+            }
+        }
+        union(best, left, top, right, bottom);
+    }
+
+    void addAll() {
+        mFull = true;
+        mCount = 0;
+    }
+
+    void clear() {
+        mFull = false;
+        mCount = 0;
+    }
+
+    boolean isFull() {
+        return mFull;
+    }
+
+    boolean isEmpty() {
+        return !mFull && mCount == 0;
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    int left(int index) {
+        return mLeft[index];
+    }
+
+    int top(int index) {
+        return mTop[index];
+    }
+
+    int right(int index) {
+        return mRight[index];
+    }
+
+    int bottom(int index) {
+        return mBottom[index];
+    }
+
+    private void union(int index, int left, int top, int right, int bottom) {
+        mLeft[index] = Math.min(mLeft[index], left);
+        mTop[index] = Math.min(mTop[index], top);
+        mRight[index] = Math.max(mRight[index], right);
+        mBottom[index] = Math.max(mBottom[index], bottom);
+    }
+
+    private static long area(int left, int top, int right, int bottom) {
+        return (long) (right - left) * (bottom - top);
+    }
+
+}
@@ -0,0 +1,342 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the scene along with the time: digits and date at the minute, the bar every quarter and
+ * the minute transition. Driven only by the Engine's inputs, each with the wall and uptime clock
+ * readings it arrived with, so a session recorded into an InputLog replays to the same frames on a
+ * plain JVM.
+ */
+final class FaceController {
+
+    static final int BAR_ANIM_DURATION = 500;
+
+    private static final long MS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    interface Host {
+        // Sample animations at the next vsync
+        void requestFrame();
+
+        // Sample animations at the first vsync from uptimeMs on, replacing an earlier such request
+        void requestFrameAt(long uptimeMs);
+
+        // Draw at the next vsync
+        void requestDraw();
+
+        // A new minute is on screen, anything else that reads the time may have to update
+        void onMinuteShown();
+
+        // The date or the rows changed, frames or pictures recorded from the old ones are stale
+        void onStaticChanged();
+
+        // The scene was recolored, anything rasterized in the old palette is stale
+        void onPaletteChanged();
+
+        // The crossfade's in-between palettes are no longer needed
+        void onThemeFadeFinished();
+    }
+
+    private final BeamUpScene mScene;
+    private final Host mHost;
+
+    // Live time, the time on screen, and the next minute prepared at second 45
+    final TimeDecomposer time;
+    private TimeDecomposer mShownTime, mPrefetchTime;
+    private boolean mPrefetched, mVisible, mAmbient;
+    private int mSurfaceWidth;
+    // Wall time minus uptime as of the last input, places a frame time within the minute
+    private long mWallOffsetMs;
+
+    // Minute transition state, mTransitionStartMs is -1 while idle
+    private int mTransitionDigits;
+    private long mTransitionStartMs = -1;
+
+    // Bar animation, eased from the time its quarter started
+    private float mBarFrom, mBarTo;
+    private long mBarStartMs = -1;
+    // Continuous bar, sampled no more often than the interval, 0 in quarter steps
+    private long mBarFrameIntervalMs, mNextBarFrameMs;
+
+    // Theme crossfade, run on its own start time, mThemeFadeStartMs is -1 while idle
+    private Palette[] mFadeSteps;
+    private long mThemeFadeStartMs = -1;
+
+    FaceController(BeamUpScene scene, TimeZone zone, Host host) {
+        mScene = scene;
+        mHost = host;
+        time = new TimeDecomposer(zone);
+        mShownTime = new TimeDecomposer(zone);
+        mPrefetchTime = new TimeDecomposer(zone);
+    }
+
+    void setSurfaceWidth(int width) {
+        mSurfaceWidth = width;
+    }
+
+    // Either may have changed while the face was hidden, so anything prefetched is dropped
+    void setTimeZone(TimeZone zone, boolean is24Hour) {
+        time.setTimeZone(zone);
+        mShownTime.setTimeZone(zone);
+        mPrefetchTime.setTimeZone(zone);
+        time.is24Hour = is24Hour;
+        mShownTime.is24Hour = is24Hour;
+        mPrefetchTime.is24Hour = is24Hour;
+        for (ClockRow row : mScene.rows) row.set24Hour(is24Hour);
+        mPrefetched = false;
+    }
+
+    /**
+     * @param fps 0 for eased steps at each quarter of the minute, otherwise the bar follows the
+     *            seconds continuously, redrawn at most this many times a second
+     */
+    void setBarFrameRate(int fps) {
+        mBarFrameIntervalMs = fps > 0 ? Math.max(1, TimeUnit.SECONDS.toMillis(1) / fps) : 0;
+        mBarStartMs = -1;
+        mNextBarFrameMs = 0;
+        if (mBarFrameIntervalMs > 0 && mVisible && !mAmbient) mHost.requestFrame();
+    }
+
+    /**
+     * @param zoneId Zone of the extra clock row, empty for none
+     */
+    void setRows(String zoneId, boolean secondsRow) {
+        ClockRow[] rows = new ClockRow[(zoneId.isEmpty() ? 0 : 1) + (secondsRow ? 1 : 0)];
+        int count = 0;
+        if (!zoneId.isEmpty()) rows[count++] = ClockRow.forZone(TimeZone.getTimeZone(zoneId));
+        if (secondsRow) rows[count] = ClockRow.seconds();
+
+        mScene.setRows(rows);
+        mHost.onStaticChanged();
+    }
+
+    /**
+     * @param fade Crossfade from the palette on screen, starting at uptimeMs, rather than switch
+     *             at once
+     */
+    void setTheme(Palette palette, boolean fade, long uptimeMs) {
+        if (fade) {
+            // From whatever is on screen, which may be partway through another fade
+            mFadeSteps = Palette.fade(mScene.palette, palette);
+            mThemeFadeStartMs = uptimeMs;
+            mHost.requestFrame();
+        } else {
+            mFadeSteps = null;
+            mThemeFadeStartMs = -1;
+            if (mScene.setPalette(palette)) mHost.onPaletteChanged();
+        }
+    }
+
+    // Every palette the running fade can show, null while none runs
+    Palette[] fadeSteps() {
+        return mFadeSteps;
+    }
+
+    boolean isTransitionRunning() {
+        return mTransitionStartMs >= 0;
+    }
+
+    void onVisibilityChanged(boolean visible, long millis, long uptimeMs) {
+        mVisible = visible;
+        mWallOffsetMs = millis - uptimeMs;
+        // Whichever frame comes first samples the continuous bar
+        mNextBarFrameMs = 0;
+        if (visible) {
+            // Rewind to the last bar quarter so the bar catches up
+            time.setTime(millis);
+            millis -= TimeUnit.SECONDS.toMillis(time.second % 15) + time.millisecond;
+            onTimeUpdate(millis, uptimeMs);
+        }
+
+        showTime();
+        mScene.dirty.addAll();
+        mHost.requestDraw();
+    }
+
+    void onAmbientModeChanged(boolean ambient) {
+        mAmbient = ambient;
+        mNextBarFrameMs = 0;
+        mScene.dirty.addAll();
+        mHost.requestDraw();
+    }
+
+    // The system's minute tick, the only time update while ambient
+    void onTimeTick(long millis, long uptimeMs, boolean ambient) {
+        mWallOffsetMs = millis - uptimeMs;
+        onTimeUpdate(millis, uptimeMs);
+
+        if (ambient) {
+            // Ticks are a minute apart here, refresh whichever second they land on
+            showTime();
+            mHost.requestDraw();
+        }
+    }
+
+    // The interactive timer, woken at the seconds with something to show
+    void onInteractiveUpdate(long millis, long uptimeMs) {
+        mWallOffsetMs = millis - uptimeMs;
+        onTimeUpdate(millis, uptimeMs);
+        if (!mScene.dirty.isEmpty()) mHost.requestDraw();
+    }
+
+    private void onTimeUpdate(long millis, long uptimeMs) {
+        time.setTime(millis);
+        for (ClockRow row : mScene.rows) {
+            row.setTime(millis);
+            if (row.kind != ClockRow.KIND_SECONDS) continue;
+
+            for (int i = 0; i < row.digits.length; i++) mScene.setRowDigitValue(row, i, row.digitValue(i, time));
+        }
+
+        int seconds = time.second;
+        switch (seconds) {
+            case 0:
+                showTime();
+                if (!mScene.dirty.isEmpty()) mHost.requestDraw();
+                break;
+            case 1:
+                animateBar(0, uptimeMs);
+
+                for (int i = 0; i < BeamUpScene.NUM_DIGITS; i++) {
+                    mScene.restoreDigitColor(i);
+                }
+                break;
+            case 15:
+                animateBar(mSurfaceWidth / 4, uptimeMs);
+                break;
+            case 30:
+                animateBar(mSurfaceWidth / 2, uptimeMs);
+                break;
+            case 45:
+                animateBar((3 * mSurfaceWidth) / 4, uptimeMs);
+                prefetchNextMinute(millis);
+                break;
+            case 59:
+                animateBar(mSurfaceWidth, uptimeMs);
+                beginMinuteAnimation(millis, uptimeMs);
+                break;
+            default: break;
+        }
+
+        // Enable for testing beam alignment
+//        for (int i = 0; i < BeamUpScene.NUM_DIGITS; i += 1) {
+//            mScene.beams[i].bottom = 1000;
+//            mScene.beams[i].color = BeamUpScene.DIRTY_WHITE;
+//            mScene.digits[i].value = 8;
+//        }
+    }
+
+    // Every animation at the same frame time, true while any is still running
+    boolean onAnimationFrame(long frameTimeMs) {
+        boolean running = false;
+        if (mBarFrameIntervalMs > 0) {
+            sampleContinuousBar(frameTimeMs);
+        } else if (mBarStartMs >= 0) {
+            float fraction = Math.min(1f, Math.max(0, frameTimeMs - mBarStartMs) / (float) BAR_ANIM_DURATION);
+            mScene.setBarRight(mBarFrom + ((mBarTo - mBarFrom) * MinuteTimeline.ease(fraction)));
+            if (fraction >= 1f) mBarStartMs = -1;
+            running = mBarStartMs >= 0;
+        }
+
+        if (mTransitionStartMs >= 0) {
+            long elapsedMs = Math.max(0, frameTimeMs - mTransitionStartMs);
+            mScene.applyTransition(elapsedMs, mTransitionDigits);
+            if (MinuteTimeline.isFinished(elapsedMs)) {
+                mTransitionStartMs = -1;
+            } else {
+                running = true;
+            }
+        }
+
+        if (mThemeFadeStartMs >= 0) {
+            long elapsedMs = Math.max(0, frameTimeMs - mThemeFadeStartMs);
+            float fade = MinuteTimeline.evaluate(MinuteTimeline.TRACK_THEME, elapsedMs);
+            if (mScene.setPalette(mFadeSteps[Math.round(fade * Palette.FADE_STEPS)])) mHost.onPaletteChanged();
+            if (MinuteTimeline.isThemeFadeFinished(elapsedMs)) {
+                mThemeFadeStartMs = -1;
+                mFadeSteps = null;
+                mHost.onThemeFadeFinished();
+            } else {
+                running = true;
+            }
+        }
+        return running;
+    }
+
+    void cancel() {
+        mBarStartMs = -1;
+        mTransitionStartMs = -1;
+    }
+
+    // The fraction of the minute at the frame's wall time. The next sample is booked for a later
+    // vsync rather than kept running, so the bar costs at most its frame rate
+    private void sampleContinuousBar(long frameTimeMs) {
+        if (!mVisible || mAmbient || frameTimeMs < mNextBarFrameMs) return;
+
+        long msOfMinute = Math.floorMod(frameTimeMs + mWallOffsetMs, MS_PER_MINUTE);
+        mScene.setBarRight((mSurfaceWidth * msOfMinute) / (float) MS_PER_MINUTE);
+        mNextBarFrameMs = frameTimeMs + mBarFrameIntervalMs;
+        mHost.requestFrameAt(mNextBarFrameMs);
+    }
+
+    // Only in quarter steps, the continuous bar is sampled from the time alone
+    private void animateBar(int right, long uptimeMs) {
+        if (mBarFrameIntervalMs > 0) return;
+
+        mBarFrom = mScene.bar.right;
+        mBarTo = right;
+        mBarStartMs = uptimeMs;
+        mHost.requestFrame();
+    }
+
+    private void beginMinuteAnimation(long millis, long uptimeMs) {
+        if (!mPrefetched) prefetchNextMinute(millis);
+        mTransitionDigits = DigitRollover.changedDigits(mScene.digits, mPrefetchTime);
+        for (ClockRow row : mScene.rows) {
+            if (row.animates()) row.transitionDigits = row.changedDigits();
+        }
+
+        mTransitionStartMs = uptimeMs;
+        mHost.requestFrame();
+    }
+
+    // Everything second 0 will show, so it only has to swap it in
+    private void prefetchNextMinute(long millis) {
+        long nextMinute = DigitRollover.nextMinute(millis);
+        mPrefetchTime.setTime(nextMinute);
+        mPrefetchTime.updateDateLabel();
+        for (ClockRow row : mScene.rows) row.prefetch(nextMinute);
+        mPrefetched = true;
+    }
+
+    private void showTime() {
+        boolean dateChanged;
+        if (mPrefetched && mPrefetchTime.isSameMinute(time)) {
+            TimeDecomposer previous = mShownTime;
+            mShownTime = mPrefetchTime;
+            mPrefetchTime = previous;
+            dateChanged = !mShownTime.isSameDay(previous);
+        } else {
+            // Woken mid-minute or by an ambient tick, nothing was prepared
+            mShownTime.setTime(time.millis);
+            dateChanged = mShownTime.updateDateLabel();
+        }
+        mPrefetched = false;
+
+        for (int i = 0; i < BeamUpScene.NUM_DIGITS; i++) mScene.setDigitValue(i, mShownTime.timeDigit(i));
+        for (ClockRow row : mScene.rows) {
+            for (int i = 0; i < row.digits.length; i++) mScene.setRowDigitValue(row, i, row.digitValue(i, time));
+        }
+
+        if (dateChanged) {
+            mScene.setDate(mShownTime.dateLabel);
+            mHost.onStaticChanged();
+        } else {
+            // Same text from the other buffer, nothing to repaint
+            mScene.date = mShownTime.dateLabel;
+        }
+        mHost.onMinuteShown();
+    }
+
+}
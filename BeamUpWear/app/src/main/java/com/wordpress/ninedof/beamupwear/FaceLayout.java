@@ -0,0 +1,163 @@
+package com.wordpress.ninedof.beamupwear;
+
+/**
+ * Immutable geometry of every element on the face, computed once per surface or insets change.
+ * Digits and beams share one table of column offsets, each shape then nudges them by a fixed
+ * amount to line the glyph ink up with its beam.
+ */
+final class FaceLayout {
+
+    static final int NUM_COLUMNS = BeamUpScene.NUM_DIGITS, BAR_HEIGHT = 10, SEPARATION = 5;
+
+    // Per shape offsets from the left of a column, tuned by eye against the imagine font
+    private static final int
+        DIGIT_INSET_ROUND = 3 * SEPARATION, DIGIT_INSET_SQUARE = 2 * SEPARATION,
+        BEAM_INSET_ROUND = 2, BEAM_INSET_SQUARE = 2 - (SEPARATION - 2),
+        COLON_INSET_ROUND = 5 * SEPARATION, COLON_INSET_SQUARE = 4 * SEPARATION,
+        DATE_INSET_ROUND = SEPARATION + 2, DATE_INSET_SQUARE = (SEPARATION / 2) + 1;
+
+    final int width, height, chinHeight;
+    final boolean isRound;
+    final int timeSize, colonSize, dateSize;
+
+    final int timeLeft, timeTop, timeRight, baseline;
+    final int barTop, barBottom;
+    final int colonX, dateX, dateY;
+    // Companion label line under the date, wide enough for CompanionData.LABEL_CAPACITY digits
+    final int companionY, companionLeft, companionRight;
+
+    // Left edge of each digit column, relative to timeLeft
+    private final int[] mColumn = new int[NUM_COLUMNS];
+    private final int[] mDigitX = new int[NUM_COLUMNS], mBeamLeft = new int[NUM_COLUMNS];
+
+    // Complication slot bounds, indexed by BeamUpScene.COMPLICATION_*
+    private final int[]
+        mSlotLeft = new int[BeamUpScene.NUM_COMPLICATIONS], mSlotTop = new int[BeamUpScene.NUM_COMPLICATIONS],
+        mSlotRight = new int[BeamUpScene.NUM_COMPLICATIONS], mSlotBottom = new int[BeamUpScene.NUM_COMPLICATIONS];
+
+    /**
+     * @param chinHeight Rows at the bottom of the screen that can't be drawn on, 0 if none
+     * @param timeSize   Width of a time digit, as measured by the paint
+     * @param colonSize  Width of the colon
+     * @param dateSize   Height used for the date line
+     */
+    FaceLayout(int width, int height, int chinHeight, boolean isRound, int timeSize, int colonSize, int dateSize) {
+        this.width = width;
+        this.height = height;
+        this.chinHeight = chinHeight;
+        this.isRound = isRound;
+        this.timeSize = timeSize;
+        this.colonSize = colonSize;
+        this.dateSize = dateSize;
+
+        // Time bounds, centered in the visible part of the screen
+        int totalWidth = (4 * timeSize) + colonSize + (4 * SEPARATION);
+        timeLeft = (width - totalWidth) / 2;
+        timeTop = (height - chinHeight - timeSize) / 2;
+        timeRight = timeLeft + totalWidth;
+        baseline = timeTop + timeSize;
+
+        barTop = baseline + SEPARATION;
+        barBottom = barTop + BAR_HEIGHT;
+
+        mColumn[0] = 0;
+        mColumn[1] = timeSize + SEPARATION;
+        mColumn[2] = (2 * timeSize) + (3 * SEPARATION) + colonSize;
+        mColumn[3] = (3 * timeSize) + (4 * SEPARATION) + colonSize;
+
+        int digitInset = timeSize + (isRound ? DIGIT_INSET_ROUND : DIGIT_INSET_SQUARE);
+        int beamInset = isRound ? BEAM_INSET_ROUND : BEAM_INSET_SQUARE;
+        for (int i = 0; i < NUM_COLUMNS; i++) {
+            mDigitX[i] = timeLeft + mColumn[i] + digitInset;
+            mBeamLeft[i] = timeLeft + mColumn[i] + beamInset;
+        }
+
+        colonX = timeLeft + (2 * timeSize) + colonSize + (isRound ? COLON_INSET_ROUND : COLON_INSET_SQUARE);
+        dateX = timeRight + (isRound ? DATE_INSET_ROUND : DATE_INSET_SQUARE);
+        dateY = baseline + dateSize + BAR_HEIGHT + (2 * SEPARATION);
+
+        int companionWidth = Math.min(width, CompanionData.LABEL_CAPACITY * dateSize);
+        // About a line of date text below, dateSize being a digit's width
+        companionY = dateY + (2 * dateSize);
+        companionLeft = (width - companionWidth) / 2;
+        companionRight = companionLeft + companionWidth;
+
+        // Two lines of date sized text centered above the time, where the beams sweep over it
+        int topWidth = 4 * dateSize;
+        int topBottom = timeTop - (2 * SEPARATION);
+        setSlot(BeamUpScene.COMPLICATION_TOP, (width - topWidth) / 2, Math.max(0, topBottom - (2 * dateSize)),
+                (width + topWidth) / 2, topBottom);
+
+        // One line at the left of the date line, between the bar and the companion line. On a
+        // round screen the time can reach further out than the circle allows this low down
+        int dateTop = barBottom + SEPARATION, dateBottom = dateY + SEPARATION;
+        int dateLeft = isRound ? Math.max(timeLeft, roundInset(width, dateBottom)) : timeLeft;
+        setSlot(BeamUpScene.COMPLICATION_DATE, dateLeft, dateTop, dateLeft + (3 * dateSize), dateBottom);
+    }
+
+    // Columns between the left edge and a round screen's edge on row y
+    private static int roundInset(int diameter, int y) {
+        double radius = diameter / 2.0, dy = y - radius;
+        return (int) Math.ceil(radius - Math.sqrt(Math.max(0, (radius * radius) - (dy * dy))));
+    }
+
+    private void setSlot(int slot, int left, int top, int right, int bottom) {
+        mSlotLeft[slot] = left;
+        mSlotTop[slot] = top;
+        mSlotRight[slot] = right;
+        mSlotBottom[slot] = bottom;
+    }
+
+    // Right edge of a digit, as drawn with Paint.Align.RIGHT
+    int digitX(int index) {
+        return mDigitX[index];
+    }
+
+    int beamLeft(int index) {
+        return mBeamLeft[index];
+    }
+
+    int beamRight(int index) {
+        return mBeamLeft[index] + timeSize;
+    }
+
+    int slotLeft(int slot) {
+        return mSlotLeft[slot];
+    }
+
+    int slotTop(int slot) {
+        return mSlotTop[slot];
+    }
+
+    int slotRight(int slot) {
+        return mSlotRight[slot];
+    }
+
+    int slotBottom(int slot) {
+        return mSlotBottom[slot];
+    }
+
+    int slotWidth(int slot) {
+        return mSlotRight[slot] - mSlotLeft[slot];
+    }
+
+    int slotHeight(int slot) {
+        return mSlotBottom[slot] - mSlotTop[slot];
+    }
+
+    // Index of the slot under a point, -1 if none
+    int slotAt(int x, int y) {
+        for (int i = 0; i < BeamUpScene.NUM_COMPLICATIONS; i++) {
+            if (x >= mSlotLeft[i] && x < mSlotRight[i] && y >= mSlotTop[i] && y < mSlotBottom[i]) return i;
+        }
+        return -1;
+    }
+
+    boolean matches(int width, int height, int chinHeight, boolean isRound,
+                    int timeSize, int colonSize, int dateSize) {
+        return this.width == width && this.height == height && this.chinHeight == chinHeight
+                && this.isRound == isRound && this.timeSize == timeSize && this.colonSize == colonSize
+                && this.dateSize == dateSize;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces animation and drawing to the display's vsync. Every animation is sampled once per vsync
+ * at that frame's time, then at most one draw is issued, so several animations running at once
+ * never cost more than one frame. When the previous draw was still running as the current vsync
+ * arrived, that frame is dropped; animations are evaluated from their start times, so the next
+ * frame simply lands further along.
+ */
+final class FramePacer {
+
+    // A 60 Hz display's vsync period
+    static final long FRAME_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    interface Clock {
+        long nanoTime();
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    interface Callbacks {
+        // Ask for onVsync() at the next vsync, e.g. with Choreographer.postFrameCallback()
+        void postFrame();
+
+        // Move every animation to the frame time, true while any of them is still running
+        boolean onAnimate(long frameTimeMs);
+
+        // Whether anything was damaged since the last draw
+        boolean needsDraw();
+
+        void onDraw();
+    }
+
+    private final Clock mClock;
+    private final Callbacks mCallbacks;
+    private boolean mFramePending, mDrawRequested, mDroppedLast;
+    private long mLastDrawEndNs = -1;
+
+    // Since creation, for dumpsys and the benchmark
+    long vsyncs, draws, dropped;
+
+    FramePacer(Clock clock, Callbacks callbacks) {
+        mClock = clock;
+        mCallbacks = callbacks;
+    }
+
+    // Sample animations at the next vsync, drawing only if they damaged anything
+    void requestFrame() {
+        if (mFramePending) return;
+
+        mFramePending = true;
+        mCallbacks.postFrame();
+    }
+
+    // Draw at the next vsync whether or not anything was damaged
+    void requestDraw() {
+        mDrawRequested = true;
+        requestFrame();
+    }
+
+    boolean isFramePending() {
+        return mFramePending;
+    }
+
+    void onVsync(long frameTimeNanos) {
+        mFramePending = false;
+        vsyncs++;
+
+        // Overran into this frame, skip it rather than queue up behind it. Never two in a row,
+        // so a face that is always slow still moves at half the rate
+        if (mLastDrawEndNs > frameTimeNanos && !mDroppedLast) {
+            mDroppedLast = true;
+            dropped++;
+            requestFrame();
+            return;
+        }
+        mDroppedLast = false;
+
+        boolean animating = mCallbacks.onAnimate(TimeUnit.NANOSECONDS.toMillis(frameTimeNanos));
+        if (mDrawRequested || mCallbacks.needsDraw()) {
+            mDrawRequested = false;
+            mCallbacks.onDraw();
+            mLastDrawEndNs = mClock.nanoTime();
+            draws++;
+        }
+        if (animating) requestFrame();
+    }
+
+    // Forget pending work, e.g. when the surface goes away
+    void cancel() {
+        mFramePending = false;
+        mDrawRequested = false;
+        mDroppedLast = false;
+        mLastDrawEndNs = -1;
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ring buffers of per-frame timings for the debug overlay and dumpsys: onDraw() duration, the
+ * latency from the first animation update to the draw showing it, invalidate() calls per second,
+ * and frames missed while the minute transition runs. Recording never allocates.
+ */
+final class FrameStats {
+
+    private static final int FRAMES = 256, SECONDS = 60;
+    private static final long NS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long[] mDrawNs = new long[FRAMES], mLatencyNs = new long[FRAMES];
+    private final boolean[] mMissed = new boolean[FRAMES];
+    private final int[] mInvalidates = new int[SECONDS];
+    private final long[] mScratch = new long[FRAMES];
+    private int mFrameCount, mSecondCount;
+
+    private long mPendingUpdateNs = -1, mDrawStartNs, mLastDrawStartNs = -1, mCurrentSecond = -1;
+    private int mCurrentInvalidates;
+    private long mTransitionFrames, mTransitionMissed;
+    // What the frames since the last reset() were drawn with
+    private String mLabel;
+
+    FrameStats(String label) {
+        mLabel = label;
+    }
+
+    // Start over, e.g. after switching to another drawing path so the two can be compared
+    void reset(String label) {
+        mLabel = label;
+        mFrameCount = 0;
+        mSecondCount = 0;
+        mPendingUpdateNs = -1;
+        mLastDrawStartNs = -1;
+        mCurrentSecond = -1;
+        mCurrentInvalidates = 0;
+        mTransitionFrames = 0;
+        mTransitionMissed = 0;
+    }
+
+    void onInvalidate(long nowNs) {
+        long second = nowNs / NS_PER_SECOND;
+        if (second != mCurrentSecond) {
+            if (mCurrentSecond >= 0) {
+                mInvalidates[mSecondCount % SECONDS] = mCurrentInvalidates;
+                mSecondCount++;
+            }
+            mCurrentSecond = second;
+            mCurrentInvalidates = 0;
+        }
+        mCurrentInvalidates++;
+    }
+
+    // Only the first update before a draw counts towards its latency
+    void onAnimationUpdate(long nowNs) {
+        if (mPendingUpdateNs < 0) mPendingUpdateNs = nowNs;
+    }
+
+    // An animation frame that damaged nothing, as in the timeline's holds. No draw is due, so the
+    // gap to the next one is not a skipped frame
+    void onIdleFrame() {
+        mLastDrawStartNs = -1;
+    }
+
+    void onDrawStart(long nowNs) {
+        mDrawStartNs = nowNs;
+    }
+
+    void onDrawEnd(long nowNs, boolean inTransition) {
+        int slot = mFrameCount % FRAMES;
+        mDrawNs[slot] = nowNs - mDrawStartNs;
+        mLatencyNs[slot] = mPendingUpdateNs < 0 ? 0 : mDrawStartNs - mPendingUpdateNs;
+
+        // Anything past one and a half vsyncs since the last draw, with no idle frame between, means
+        // a frame was skipped
+        boolean missed = inTransition && mLastDrawStartNs >= 0
+                && (mDrawStartNs - mLastDrawStartNs) > ((3 * FramePacer.FRAME_INTERVAL_NS) / 2);
+        mMissed[slot] = missed;
+        if (inTransition) {
+            mTransitionFrames++;
+            if (missed) mTransitionMissed++;
+        }
+
+        mLastDrawStartNs = inTransition ? mDrawStartNs : -1;
+        mPendingUpdateNs = -1;
+        mFrameCount++;
+    }
+
+    int recordedFrames() {
+        return Math.min(mFrameCount, FRAMES);
+    }
+
+    // Percentile in microseconds of onDraw() time (latency == false) or update latency
+    long percentileUs(boolean latency, int percentile) {
+        int count = recordedFrames();
+        if (count == 0) return 0;
+
+        System.arraycopy(latency ? mLatencyNs : mDrawNs, 0, mScratch, 0, count);
+        Arrays.sort(mScratch, 0, count);
+        return TimeUnit.NANOSECONDS.toMicros(mScratch[Math.min(count - 1, (count * percentile) / 100)]);
+    }
+
+    int lastInvalidatesPerSecond() {
+        return mSecondCount == 0 ? mCurrentInvalidates : mInvalidates[(mSecondCount - 1) % SECONDS];
+    }
+
+    int maxInvalidatesPerSecond() {
+        int max = mCurrentInvalidates;
+        for (int i = 0; i < Math.min(mSecondCount, SECONDS); i++) max = Math.max(max, mInvalidates[i]);
+        return max;
+    }
+
+    int recentMissedFrames() {
+        int missed = 0;
+        for (int i = 0; i < recordedFrames(); i++) {
+            if (mMissed[i]) missed++;
+        }
+        return missed;
+    }
+
+    long transitionFrames() {
+        return mTransitionFrames;
+    }
+
+    long transitionMissed() {
+        return mTransitionMissed;
+    }
+
+    void dump(PrintWriter out, String prefix) {
+        out.println(prefix + "Frames recorded: " + recordedFrames() + " (of " + mFrameCount + "), drawn with " + mLabel);
+        out.println(prefix + "onDraw us: p50=" + percentileUs(false, 50) + " p90=" + percentileUs(false, 90)
+                + " p99=" + percentileUs(false, 99) + " max=" + percentileUs(false, 100));
+        out.println(prefix + "Update to draw us: p50=" + percentileUs(true, 50) + " p90=" + percentileUs(true, 90)
+                + " max=" + percentileUs(true, 100));
+        out.println(prefix + "Invalidates/s: last=" + lastInvalidatesPerSecond()
+                + " max(60s)=" + maxInvalidatesPerSecond());
+        out.println(prefix + "Minute transitions: " + mTransitionMissed + " missed of " + mTransitionFrames
+                + " frames, " + recentMissedFrames() + " missed in the recorded window");
+    }
+
+}
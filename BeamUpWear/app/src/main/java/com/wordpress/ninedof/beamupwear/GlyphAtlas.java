@@ -0,0 +1,132 @@
+package com.wordpress.ninedof.beamupwear;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rasterizes a character set once into an ALPHA_8 bitmap so the draw loop can blit glyphs
+ * instead of shaping text on every frame. The atlas is an alpha mask, so any color can be
+ * drawn from the same bitmap via the Paint passed to draw calls.
+ */
+final class GlyphAtlas {
+
+    // The antialiasing fringe, the ink itself is measured
+    private static final int PADDING = 1;
+
+    final GlyphAtlasLayout layout;
+    final float textSize;
+    final boolean isRound;
+
+    // Paint measurements the layout was built from, persisted by RenderCache
+    final float[] advances;
+    final int[] inkBounds;
+    final float ascent, descent, strokeWidth;
+
+    private final Bitmap mBitmap;
+    private final Rect mSrc = new Rect(), mDst = new Rect();
+
+    GlyphAtlas(Paint textPaint, String chars, boolean isRound) {
+        this.textSize = textPaint.getTextSize();
+        this.isRound = isRound;
+
+        Paint paint = new Paint(textPaint);
+        paint.setTextAlign(Paint.Align.LEFT);
+        paint.setColor(Color.WHITE);
+
+        advances = new float[chars.length()];
+        paint.getTextWidths(chars, advances);
+        inkBounds = new int[chars.length() * GlyphAtlasLayout.BOUNDS_PER_CHAR];
+        Rect bounds = new Rect();
+        for (int i = 0; i < chars.length(); i++) {
+            paint.getTextBounds(chars, i, i + 1, bounds);
+            int b = i * GlyphAtlasLayout.BOUNDS_PER_CHAR;
+            inkBounds[b] = bounds.left;
+            inkBounds[b + 1] = bounds.top;
+            inkBounds[b + 2] = bounds.right;
+            inkBounds[b + 3] = bounds.bottom;
+        }
+        Paint.FontMetrics fm = paint.getFontMetrics();
+        ascent = fm.ascent;
+        descent = fm.descent;
+        // getTextBounds() leaves the stroke out
+        strokeWidth = paint.getStyle() == Paint.Style.FILL ? 0 : paint.getStrokeWidth();
+        layout = new GlyphAtlasLayout(chars, advances, inkBounds, ascent, descent, strokeWidth, PADDING);
+
+        mBitmap = Bitmap.createBitmap(layout.atlasWidth, layout.cellHeight, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(mBitmap);
+        for (int i = 0; i < chars.length(); i++) {
+            canvas.drawText(chars, i, i + 1, layout.cellLeft(i) + layout.originX(i), layout.baseline(), paint);
+        }
+    }
+
+    // Restored from RenderCache, with pixels as written by copyPixels()
+    GlyphAtlas(String chars, float textSize, boolean isRound, float[] advances, int[] inkBounds, float ascent,
+               float descent, float strokeWidth, ByteBuffer pixels) {
+        this.textSize = textSize;
+        this.isRound = isRound;
+        this.advances = advances;
+        this.inkBounds = inkBounds;
+        this.ascent = ascent;
+        this.descent = descent;
+        this.strokeWidth = strokeWidth;
+        layout = new GlyphAtlasLayout(chars, advances, inkBounds, ascent, descent, strokeWidth, PADDING);
+
+        mBitmap = Bitmap.createBitmap(layout.atlasWidth, layout.cellHeight, Bitmap.Config.ALPHA_8);
+        if (pixels.remaining() != mBitmap.getByteCount()) {
+            mBitmap.recycle();
+            throw new IllegalArgumentException("Expected " + mBitmap.getByteCount() + " bytes of pixels");
+        }
+        mBitmap.copyPixelsFromBuffer(pixels);
+    }
+
+    boolean matches(float textSize, boolean isRound) {
+        return this.textSize == textSize && this.isRound == isRound;
+    }
+
+    // Equivalent of canvas.drawText() with Paint.Align.RIGHT for a single character
+    void drawGlyph(Canvas canvas, char c, int rightX, int baselineY, Paint paint) {
+        int index = layout.indexOf(c);
+        if (index < 0) return;
+
+        blit(canvas, index, layout.destLeft(index, rightX), layout.destTop(baselineY), paint);
+    }
+
+    // Equivalent of canvas.drawText() with Paint.Align.RIGHT, laid out from the right edge
+    void drawText(Canvas canvas, CharSequence text, int rightX, int baselineY, Paint paint) {
+        int x = rightX;
+        int top = layout.destTop(baselineY);
+        for (int i = text.length() - 1; i >= 0; i--) {
+            int index = layout.indexOf(text.charAt(i));
+            if (index < 0) continue;
+
+            blit(canvas, index, layout.destLeft(index, x), top, paint);
+            x -= layout.advance(index);
+        }
+    }
+
+    private void blit(Canvas canvas, int index, int left, int top, Paint paint) {
+        int cellLeft = layout.cellLeft(index);
+        int cellWidth = layout.cellWidth(index);
+        mSrc.set(cellLeft, 0, cellLeft + cellWidth, layout.cellHeight);
+        mDst.set(left, top, left + cellWidth, top + layout.cellHeight);
+        canvas.drawBitmap(mBitmap, mSrc, mDst, paint);
+    }
+
+    int byteCount() {
+        return mBitmap.getByteCount();
+    }
+
+    void copyPixels(ByteBuffer dst) {
+        mBitmap.copyPixelsToBuffer(dst);
+    }
+
+    void recycle() {
+        mBitmap.recycle();
+    }
+
+}
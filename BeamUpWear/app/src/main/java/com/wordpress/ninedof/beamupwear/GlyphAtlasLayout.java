@@ -0,0 +1,133 @@
+package com.wordpress.ninedof.beamupwear;
+
+/**
+ * Pure Java packing of a fixed character set into a single row of atlas cells.
+ * Kept free of android.* so the cell maths can be checked on a plain JVM.
+ */
+final class GlyphAtlasLayout {
+
+    private static final int MAX_CHAR = 128;
+
+    // Ink bounds per character: left, top, right, bottom
+    static final int BOUNDS_PER_CHAR = 4;
+
+    // Everything the face draws from its atlases, shared with the JVM benchmark and replay
+    static final String
+        TIME_CHARS = "0123456789:",
+        DATE_CHARS = "0123456789: ADEFHIMNORSTUW?%-C";
+
+    final String chars;
+    // ascent is the top of the cells above the baseline (negative), the font's or any higher ink
+    final int padding, ascent, cellHeight, atlasWidth;
+    // Furthest any cell reaches left of its glyph's origin, and right of its advance
+    final int overhangLeft, overhangRight;
+
+    private final int[] mCellLeft, mCellWidth, mAdvance, mOriginX;
+    private final int[] mIndex = new int[MAX_CHAR];
+
+    /**
+     * Each cell holds its glyph's advance and ink, whichever reaches further, so italic or stroked
+     * glyphs whose ink overhangs the advance are not clipped.
+     *
+     * @param chars       Characters to pack, ASCII only
+     * @param advances    Horizontal advance of each character, as measured by the paint
+     * @param inkBounds   BOUNDS_PER_CHAR values per character, its ink relative to the origin on
+     *                    the baseline as Paint.getTextBounds() reports it, without the stroke
+     * @param ascent      Font ascent (negative, as reported by Paint.FontMetrics)
+     * @param descent     Font descent
+     * @param strokeWidth Width of the stroke around the ink, 0 for filled text
+     * @param padding     Extra pixels around each cell for the antialiasing fringe
+     */
+    GlyphAtlasLayout(String chars, float[] advances, int[] inkBounds, float ascent, float descent,
+                     float strokeWidth, int padding) {
+        if (chars.length() != advances.length || inkBounds.length != chars.length() * BOUNDS_PER_CHAR) {
+            throw new IllegalArgumentException("Expected one advance and one ink bounds per character");
+        }
+
+        this.chars = chars;
+        this.padding = padding;
+        float halfStroke = strokeWidth / 2;
+
+        for (int i = 0; i < MAX_CHAR; i++) mIndex[i] = -1;
+
+        int count = chars.length();
+        mCellLeft = new int[count];
+        mCellWidth = new int[count];
+        mAdvance = new int[count];
+        mOriginX = new int[count];
+
+        float top = ascent, bottom = descent;
+        int x = 0, maxLeft = 0, maxRight = 0;
+        for (int i = 0; i < count; i++) {
+            char c = chars.charAt(i);
+            if (c >= MAX_CHAR) throw new IllegalArgumentException("Unsupported character: " + c);
+
+            int b = i * BOUNDS_PER_CHAR;
+            top = Math.min(top, inkBounds[b + 1] - halfStroke);
+            bottom = Math.max(bottom, inkBounds[b + 3] + halfStroke);
+            int left = Math.min(0, (int) Math.floor(inkBounds[b] - halfStroke));
+            int right = Math.max((int) Math.ceil(advances[i]), (int) Math.ceil(inkBounds[b + 2] + halfStroke));
+
+            mIndex[c] = i;
+            mAdvance[i] = Math.round(advances[i]);
+            mCellLeft[i] = x;
+            mCellWidth[i] = right - left + (2 * padding);
+            mOriginX[i] = padding - left;
+            maxLeft = Math.max(maxLeft, mOriginX[i]);
+            maxRight = Math.max(maxRight, mCellWidth[i] - mOriginX[i] - mAdvance[i]);
+            x += mCellWidth[i];
+        }
+        atlasWidth = Math.max(1, x);
+        overhangLeft = maxLeft;
+        overhangRight = maxRight;
+
+        this.ascent = (int) Math.floor(top);
+        this.cellHeight = (int) Math.ceil(bottom) - this.ascent + (2 * padding);
+    }
+
+    int indexOf(char c) {
+        return c < MAX_CHAR ? mIndex[c] : -1;
+    }
+
+    int cellLeft(int index) {
+        return mCellLeft[index];
+    }
+
+    int cellWidth(int index) {
+        return mCellWidth[index];
+    }
+
+    int advance(int index) {
+        return mAdvance[index];
+    }
+
+    // From the cell's left edge to the glyph's origin, where drawText() with Paint.Align.LEFT goes
+    int originX(int index) {
+        return mOriginX[index];
+    }
+
+    // Baseline offset from the top of a cell
+    int baseline() {
+        return padding - ascent;
+    }
+
+    // Left edge of the cell for a glyph whose advance ends at rightX (Paint.Align.RIGHT)
+    int destLeft(int index, int rightX) {
+        return rightX - mAdvance[index] - mOriginX[index];
+    }
+
+    // Top edge of the cell for a glyph drawn on the given baseline
+    int destTop(int baselineY) {
+        return baselineY - baseline();
+    }
+
+    int measure(CharSequence text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int index = indexOf(text.charAt(i));
+            if (index >= 0) width += mAdvance[index];
+        }
+        return width;
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every input that moves the face, as the Engine received it, one line per event: the kind, then
+ * its arguments separated by spaces. Replaying the events through a FaceController and a
+ * FramePacer in order reproduces the frames drawn during the recording.
+ */
+final class InputLog {
+
+    static final String
+        SURFACE = "surface",            // width height
+        INSETS = "insets",              // round(0|1) chinHeight
+        ZONE = "zone",                  // zoneId 24hour(0|1)
+        BAR = "bar",                    // fps, 0 for quarter steps
+        ROWS = "rows",                  // zoneId or - for no zone row, seconds(0|1)
+        THEME = "theme",                // palette name, fade(0|1) uptimeMs
+        COMPANION = "companion",        // label, the rest of the line
+        COMPLICATION = "complication",  // slot hasContent(0|1), the slot was rasterized again
+        VISIBLE = "visible",            // visible(0|1) wallMs uptimeMs
+        AMBIENT = "ambient",            // ambient(0|1)
+        TICK = "tick",                  // wallMs uptimeMs ambient(0|1), the system's minute tick
+        UPDATE = "update",              // wallMs uptimeMs, the interactive timer
+        VSYNC = "vsync",                // frameTimeNanos
+        TRUNCATED = "truncated";        // the log hit MAX_LENGTH here, read() refuses it
+
+    // Interactive minutes log a few kB each, this holds a few hours of them
+    private static final int MAX_LENGTH = 1 << 20;
+
+    static final class Event {
+        final String kind;
+        private final String[] mArgs;
+
+        Event(String kind, String[] args) {
+            this.kind = kind;
+            mArgs = args;
+        }
+
+        String arg(int index) {
+            return mArgs[index];
+        }
+
+        long longArg(int index) {
+            return Long.parseLong(mArgs[index]);
+        }
+
+        boolean flag(int index) {
+            return "1".equals(mArgs[index]);
+        }
+
+        // The arguments from index on, as they were written
+        String rest(int index) {
+            StringBuilder rest = new StringBuilder();
+            for (int i = index; i < mArgs.length; i++) {
+                if (i > index) rest.append(' ');
+                rest.append(mArgs[i]);
+            }
+            return rest.toString();
+        }
+    }
+
+    private final StringBuilder mLines = new StringBuilder();
+    private boolean mFull;
+
+    void surface(int width, int height) {
+        line(SURFACE).append(width).append(' ').append(height).append('\n');
+    }
+
+    void insets(boolean isRound, int chinHeight) {
+        line(INSETS).append(isRound ? 1 : 0).append(' ').append(chinHeight).append('\n');
+    }
+
+    void zone(String zoneId, boolean is24Hour) {
+        line(ZONE).append(zoneId).append(' ').append(is24Hour ? 1 : 0).append('\n');
+    }
+
+    void bar(int fps) {
+        line(BAR).append(fps).append('\n');
+    }
+
+    void visible(boolean visible, long wallMs, long uptimeMs) {
+        line(VISIBLE).append(visible ? 1 : 0).append(' ').append(wallMs).append(' ').append(uptimeMs).append('\n');
+    }
+
+    void ambient(boolean ambient) {
+        line(AMBIENT).append(ambient ? 1 : 0).append('\n');
+    }
+
+    void tick(long wallMs, long uptimeMs, boolean ambient) {
+        line(TICK).append(wallMs).append(' ').append(uptimeMs).append(' ').append(ambient ? 1 : 0).append('\n');
+    }
+
+    void update(long wallMs, long uptimeMs) {
+        line(UPDATE).append(wallMs).append(' ').append(uptimeMs).append('\n');
+    }
+
+    void rows(String zoneId, boolean seconds) {
+        line(ROWS).append(zoneId.isEmpty() ? "-" : zoneId).append(' ').append(seconds ? 1 : 0).append('\n');
+    }
+
+    void theme(String name, boolean fade, long uptimeMs) {
+        line(THEME).append(name).append(' ').append(fade ? 1 : 0).append(' ').append(uptimeMs).append('\n');
+    }
+
+    void companion(CharSequence label) {
+        line(COMPANION).append(label).append('\n');
+    }
+
+    void complication(int slot, boolean hasContent) {
+        line(COMPLICATION).append(slot).append(' ').append(hasContent ? 1 : 0).append('\n');
+    }
+
+    void vsync(long frameTimeNanos) {
+        line(VSYNC).append(frameTimeNanos).append('\n');
+    }
+
+    void writeTo(Writer writer) throws IOException {
+        writer.append(mLines);
+        writer.flush();
+    }
+
+    /**
+     * @throws IOException If the log was truncated, a replay of part of a session would pass or
+     *                     fail on frames the recording never finished
+     */
+    static List<Event> read(Reader reader) throws IOException {
+        List<Event> events = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] parts = line.split(" ");
+            if (TRUNCATED.equals(parts[0])) {
+                throw new IOException("Log truncated after " + events.size() + " events, record a shorter session");
+            }
+            String[] args = new String[parts.length - 1];
+            System.arraycopy(parts, 1, args, 0, args.length);
+            events.add(new Event(parts[0], args));
+        }
+        return events;
+    }
+
+    // A throwaway builder once full, so callers don't need to check. The first event dropped leaves a marker
+    private StringBuilder line(String kind) {
+        if (mLines.length() >= MAX_LENGTH) {
+            if (!mFull) mLines.append(TRUNCATED).append('\n');
+            mFull = true;
+            return new StringBuilder();
+        }
+        return mLines.append(kind).append(' ');
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.wordpress.ninedof.beamupwear;
+
+/**
+ * In-memory stand-in for the phone, values published here are delivered straight to the
+ * listener. Used for driving the face from dumpsys and for exercising CompanionData on a JVM.
+ */
+final class LocalCompanionChannel implements CompanionChannel {
+
+    private Listener mListener;
+
+    @Override
+    public void start(Listener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void stop() {
+        mListener = null;
+    }
+
+    void publish(int field, int value) {
+        if (mListener != null) mListener.onFieldChanged(field, value);
+    }
+
+}
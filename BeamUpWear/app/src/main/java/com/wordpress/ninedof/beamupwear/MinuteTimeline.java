@@ -0,0 +1,84 @@
+package com.wordpress.ninedof.beamupwear;
+
+/**
+ * The minute transition as a static keyframe table, compiled once from the sequence below and
+ * evaluated from a single elapsed time. Values are fractions, resolved to pixels by the caller:
+ *
+ *   Beam:  0 = retracted to the top of the screen, 1 = down to the digit baseline
+ *   Digit: 0 = fully above the screen, 1 = resting on the baseline
+ *   Theme: 0 = the previous palette, 1 = the new one, run on its own start time
+ *
+ * Pure Java and allocation-free, so results are deterministic and checkable off-device.
+ */
+final class MinuteTimeline {
+
+    static final int TRACK_BEAM = 0, TRACK_DIGIT = 1, TRACK_THEME = 2;
+
+    static final int
+        BEAM_DURATION = 300, DIGIT_DURATION = 300,
+        DIGIT_UP_DELAY = 450, DIGIT_DOWN_DELAY = 400, BEAM_UP_DELAY = 1400,
+        DIGIT_RESTORE_DELAY = 200,
+        THEME_FADE_DURATION = 600;
+
+    // Per track keyframe times (ms from the start of the transition) and values
+    private static final int[][] TIMES = new int[3][];
+    private static final float[][] VALUES = new float[3][];
+
+    // Digits are drawn black (cut out of the beam) from DIGIT_HIDE_START until DIGIT_HIDE_END
+    static final int DIGIT_HIDE_START, DIGIT_HIDE_END, DURATION;
+
+    static {
+        // T+0: Beam DOWN, hold, Beam UP
+        int t = 0;
+        TIMES[TRACK_BEAM] = new int[] { t, t += BEAM_DURATION, t += BEAM_UP_DELAY, t += BEAM_DURATION };
+        VALUES[TRACK_BEAM] = new float[] { 0f, 1f, 1f, 0f };
+        int beamEnd = t;
+
+        // T+450: Digit UP, hold off screen, Digit DOWN
+        t = 0;
+        TIMES[TRACK_DIGIT] = new int[] { t, t += DIGIT_UP_DELAY, t += DIGIT_DURATION, t += DIGIT_DOWN_DELAY, t += DIGIT_DURATION };
+        VALUES[TRACK_DIGIT] = new float[] { 1f, 1f, 0f, 0f, 1f };
+
+        DIGIT_HIDE_START = DIGIT_UP_DELAY;
+        DIGIT_HIDE_END = t + DIGIT_RESTORE_DELAY;
+        DURATION = Math.max(beamEnd, DIGIT_HIDE_END);
+
+        // Not part of the minute, a palette crossfade started whenever the theme changes
+        TIMES[TRACK_THEME] = new int[] { 0, THEME_FADE_DURATION };
+        VALUES[TRACK_THEME] = new float[] { 0f, 1f };
+    }
+
+    private MinuteTimeline() { }
+
+    static float evaluate(int track, long elapsedMs) {
+        int[] times = TIMES[track];
+        float[] values = VALUES[track];
+
+        if (elapsedMs <= times[0]) return values[0];
+        for (int k = 1; k < times.length; k++) {
+            if (elapsedMs < times[k]) {
+                float fraction = (float) (elapsedMs - times[k - 1]) / (times[k] - times[k - 1]);
+                return values[k - 1] + ((values[k] - values[k - 1]) * ease(fraction));
+            }
+        }
+        return values[values.length - 1];
+    }
+
+    static boolean isDigitHidden(long elapsedMs) {
+        return elapsedMs >= DIGIT_HIDE_START && elapsedMs < DIGIT_HIDE_END;
+    }
+
+    static boolean isFinished(long elapsedMs) {
+        return elapsedMs >= DURATION;
+    }
+
+    static boolean isThemeFadeFinished(long elapsedMs) {
+        return elapsedMs >= THEME_FADE_DURATION;
+    }
+
+    // Same curve as ValueAnimator's default AccelerateDecelerateInterpolator
+    static float ease(float fraction) {
+        return (float) (Math.cos((fraction + 1) * Math.PI) / 2.0) + 0.5f;
+    }
+
+}
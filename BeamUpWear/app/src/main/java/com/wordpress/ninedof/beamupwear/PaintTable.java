@@ -0,0 +1,58 @@
+package com.wordpress.ninedof.beamupwear;
+
+import android.graphics.Paint;
+
+/**
+ * One Paint per color for a set of palettes, each copied from a base paint when the table is
+ * compiled and never changed after. Drawing looks a Paint up by color instead of setting the
+ * color on a shared one, so it never allocates or changes the table.
+ */
+final class PaintTable {
+
+    // Power of two, well over the colors of a whole fade
+    private static final int CAPACITY = 512;
+
+    private final Paint mBase;
+    private final int[] mColors = new int[CAPACITY];
+    private final Paint[] mPaints = new Paint[CAPACITY];
+
+    PaintTable(Paint base, Palette... palettes) {
+        mBase = base;
+        for (Palette palette : palettes) {
+            for (int color : palette.colors()) add(color);
+        }
+    }
+
+    /**
+     * @return The base paint for a color no palette of the table has, which debug builds refuse:
+     *         it means the scene shows a color that compileTheme() didn't know about
+     */
+    Paint get(int color) {
+        int slot = slotOf(color);
+        if (slot >= 0 && mPaints[slot] != null) return mPaints[slot];
+
+        if (BuildConfig.DEBUG) throw new IllegalStateException("No paint for color #" + Integer.toHexString(color));
+        return mBase;
+    }
+
+    private void add(int color) {
+        int slot = slotOf(color);
+        if (slot < 0 || mPaints[slot] != null) return;
+
+        Paint paint = new Paint(mBase);
+        paint.setColor(color);
+        mColors[slot] = color;
+        mPaints[slot] = paint;
+    }
+
+    // Linear probing from the color's hash, -1 once the table is full
+    private int slotOf(int color) {
+        int start = (color * 0x9E3779B9) >>> 23;
+        for (int i = 0; i < CAPACITY; i++) {
+            int slot = (start + i) & (CAPACITY - 1);
+            if (mPaints[slot] == null || mColors[slot] == color) return slot;
+        }
+        return -1;
+    }
+
+}
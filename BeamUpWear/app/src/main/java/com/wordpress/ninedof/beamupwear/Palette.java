@@ -0,0 +1,108 @@
+package com.wordpress.ninedof.beamupwear;
+
+/**
+ * Colors of the interactive face, with beams and digits colored per column for accent palettes.
+ * A theme change crossfades through fade(), which compiles the in-between palettes up front and
+ * quantized to FADE_STEPS, so every color the face can show is known before the first frame of it.
+ */
+final class Palette {
+
+    static final int FADE_STEPS = 16;
+
+    private static final int NUM_DIGITS = BeamUpScene.NUM_DIGITS;
+
+    static final Palette CLASSIC = new Palette("classic", BeamUpScene.BLACK,
+            same(BeamUpScene.WHITE), same(BeamUpScene.WHITE),
+            BeamUpScene.WHITE, BeamUpScene.DIRTY_WHITE, BeamUpScene.WHITE, BeamUpScene.WHITE);
+
+    static final Palette[] PALETTES = {
+        CLASSIC,
+        new Palette("ember", BeamUpScene.BLACK,
+                same(0xFFFF6D00), same(BeamUpScene.WHITE),
+                0xFFFF6D00, 0xFFFFAB91, 0xFFFF6D00, BeamUpScene.DIRTY_WHITE),
+        new Palette("ice", 0xFF00121A,
+                same(0xFF00B8D4), same(0xFFE0F7FA),
+                0xFF00B8D4, 0xFF80DEEA, 0xFF00B8D4, 0xFFB2EBF2),
+        new Palette("spectrum", BeamUpScene.BLACK,
+                new int[] { 0xFFFF5252, 0xFFFFD740, 0xFF69F0AE, 0xFF448AFF },
+                new int[] { 0xFFFF8A80, 0xFFFFE57F, 0xFFB9F6CA, 0xFF82B1FF },
+                BeamUpScene.WHITE, BeamUpScene.DIRTY_WHITE, BeamUpScene.WHITE, BeamUpScene.WHITE),
+    };
+
+    final String name;
+    // Digits are cut out of their beam in the background color during the minute transition
+    final int background;
+    final int[] beams, digits;
+    final int colon, date, bar, row;
+
+    private Palette(String name, int background, int[] beams, int[] digits, int colon, int date, int bar, int row) {
+        this.name = name;
+        this.background = background;
+        this.beams = beams;
+        this.digits = digits;
+        this.colon = colon;
+        this.date = date;
+        this.bar = bar;
+        this.row = row;
+    }
+
+    // Falls back to CLASSIC for unknown names
+    static Palette named(String name) {
+        for (Palette palette : PALETTES) {
+            if (palette.name.equals(name)) return palette;
+        }
+        return CLASSIC;
+    }
+
+    /**
+     * @return FADE_STEPS + 1 palettes, from (exactly) to to (exactly)
+     */
+    static Palette[] fade(Palette from, Palette to) {
+        Palette[] steps = new Palette[FADE_STEPS + 1];
+        steps[0] = from;
+        steps[FADE_STEPS] = to;
+        for (int s = 1; s < FADE_STEPS; s++) {
+            float t = (float) s / FADE_STEPS;
+            int[] beams = new int[NUM_DIGITS], digits = new int[NUM_DIGITS];
+            for (int i = 0; i < NUM_DIGITS; i++) {
+                beams[i] = blend(from.beams[i], to.beams[i], t);
+                digits[i] = blend(from.digits[i], to.digits[i], t);
+            }
+            steps[s] = new Palette(to.name, blend(from.background, to.background, t), beams, digits,
+                    blend(from.colon, to.colon, t), blend(from.date, to.date, t),
+                    blend(from.bar, to.bar, t), blend(from.row, to.row, t));
+        }
+        return steps;
+    }
+
+    // Every color drawn from this palette, duplicates included
+    int[] colors() {
+        int[] colors = new int[5 + (2 * NUM_DIGITS)];
+        System.arraycopy(beams, 0, colors, 0, NUM_DIGITS);
+        System.arraycopy(digits, 0, colors, NUM_DIGITS, NUM_DIGITS);
+        int n = 2 * NUM_DIGITS;
+        colors[n++] = background;
+        colors[n++] = colon;
+        colors[n++] = date;
+        colors[n++] = bar;
+        colors[n] = row;
+        return colors;
+    }
+
+    private static int[] same(int color) {
+        int[] colors = new int[NUM_DIGITS];
+        for (int i = 0; i < NUM_DIGITS; i++) colors[i] = color;
+        return colors;
+    }
+
+    // Per channel, including alpha
+    private static int blend(int from, int to, float t) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int a = (from >>> shift) & 0xFF, b = (to >>> shift) & 0xFF;
+            result |= Math.round(a + ((b - a) * t)) << shift;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.wordpress.ninedof.beamupwear;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+
+/**
+ * Draws the scene to a hardware accelerated canvas from recorded Pictures. Each glyph is recorded
+ * once per digit color of the palette at the origin of its atlas cell, so a moving digit costs a
+ * translate and a replay, and the colon and date are one recording that is only redone when they
+ * change. Beams and the bar are plain rects, which the GPU draws cheaper than any replay.
+ */
+final class PictureRenderer {
+
+    private final Picture mStatic = new Picture();
+    private Picture[][] mGlyphs;
+    // Digit colors with recorded glyphs, anything else (mid crossfade) falls back to the atlas
+    private int[] mGlyphColors;
+    private boolean mStaticValid;
+
+    private GlyphAtlas mTimeAtlas, mDateAtlas;
+    private PaintTable mFillPaints, mTimePaints, mDatePaints;
+    private ComplicationSlot[] mComplications;
+
+    // Glyphs are recorded again by the next setPalette()
+    void setAtlases(GlyphAtlas timeAtlas, GlyphAtlas dateAtlas) {
+        mTimeAtlas = timeAtlas;
+        mDateAtlas = dateAtlas;
+        mGlyphs = null;
+        mStaticValid = false;
+    }
+
+    void setPalette(Palette palette, PaintTable fillPaints, PaintTable timePaints, PaintTable datePaints) {
+        mFillPaints = fillPaints;
+        mTimePaints = timePaints;
+        mDatePaints = datePaints;
+        mStaticValid = false;
+        if (mTimeAtlas == null) return;
+
+        // The digit colors, and the background they are cut out in
+        int[] colors = new int[palette.digits.length + 1];
+        System.arraycopy(palette.digits, 0, colors, 0, palette.digits.length);
+        colors[palette.digits.length] = palette.background;
+        mGlyphColors = colors;
+
+        GlyphAtlasLayout layout = mTimeAtlas.layout;
+        mGlyphs = new Picture[colors.length][];
+        for (int c = 0; c < colors.length; c++) {
+            // Accent palettes share colors between columns, those share recordings too
+            int first = indexOf(colors, colors[c]);
+            if (first < c) {
+                mGlyphs[c] = mGlyphs[first];
+                continue;
+            }
+
+            mGlyphs[c] = new Picture[layout.chars.length()];
+            Paint paint = timePaints.get(colors[c]);
+            for (int i = 0; i < layout.chars.length(); i++) {
+                // Recorded so the cell's top left lands on the origin
+                Picture picture = new Picture();
+                Canvas canvas = picture.beginRecording(layout.cellWidth(i), layout.cellHeight);
+                mTimeAtlas.drawGlyph(canvas, layout.chars.charAt(i), layout.advance(i) + layout.originX(i),
+                        layout.baseline(), paint);
+                picture.endRecording();
+                mGlyphs[c][i] = picture;
+            }
+        }
+    }
+
+    void setComplications(ComplicationSlot[] complications) {
+        mComplications = complications;
+    }
+
+    // The colons, date or companion text changed, record them again on the next draw
+    void invalidateStatic() {
+        mStaticValid = false;
+    }
+
+    void draw(Canvas canvas, BeamUpScene scene) {
+        if (mGlyphs == null) return;
+
+        if (!mStaticValid) recordStatic(scene);
+        canvas.drawColor(scene.palette.background);
+
+        // Already rasterized, the texture is only uploaded again after a slot changes
+        FaceLayout layout = scene.layout;
+        for (int i = 0; i < BeamUpScene.NUM_COMPLICATIONS; i++) {
+            if (scene.complications[i]) mComplications[i].draw(canvas, layout.slotLeft(i), layout.slotTop(i));
+        }
+
+        for (int i = 0; i < BeamUpScene.NUM_DIGITS; i++) {
+            drawBeam(canvas, scene.beams[i]);
+            drawDigit(canvas, scene.digits[i]);
+        }
+
+        // Row digits are small and rarely move, the atlas is as cheap as a replay
+        for (ClockRow row : scene.rows) {
+            if (!row.visible) continue;
+
+            for (int i = 0; i < row.digits.length; i++) {
+                BeamUpScene.Digit digit = row.digits[i];
+                drawBeam(canvas, row.beams[i]);
+                mDateAtlas.drawGlyph(canvas, (char) ('0' + digit.value), digit.x, digit.y, mDatePaints.get(digit.color));
+            }
+        }
+
+        canvas.drawPicture(mStatic);
+
+        BeamUpScene.Bar bar = scene.bar;
+        if (bar.right > 0) canvas.drawRect(0, bar.top, bar.right, bar.bottom, mFillPaints.get(bar.color));
+    }
+
+    private void drawBeam(Canvas canvas, BeamUpScene.Beam beam) {
+        if (beam.bottom <= beam.top) return;
+
+        canvas.drawRect(beam.left, beam.top, beam.right, beam.bottom, mFillPaints.get(beam.color));
+    }
+
+    private void drawDigit(Canvas canvas, BeamUpScene.Digit digit) {
+        char c = (char) ('0' + digit.value);
+        GlyphAtlasLayout layout = mTimeAtlas.layout;
+        int index = layout.indexOf(c);
+        if (index < 0) return;
+
+        Picture picture = glyphFor(index, digit.color);
+        if (picture == null) {
+            mTimeAtlas.drawGlyph(canvas, c, digit.x, digit.y, mTimePaints.get(digit.color));
+            return;
+        }
+
+        int save = canvas.save();
+        canvas.translate(layout.destLeft(index, digit.x), layout.destTop(digit.y));
+        canvas.drawPicture(picture);
+        canvas.restoreToCount(save);
+    }
+
+    private Picture glyphFor(int index, int color) {
+        int c = indexOf(mGlyphColors, color);
+        return c < 0 ? null : mGlyphs[c][index];
+    }
+
+    private static int indexOf(int[] colors, int color) {
+        for (int i = 0; i < colors.length; i++) {
+            if (colors[i] == color) return i;
+        }
+        return -1;
+    }
+
+    private void recordStatic(BeamUpScene scene) {
+        FaceLayout layout = scene.layout;
+        Canvas canvas = mStatic.beginRecording(layout.width, layout.height);
+        Palette palette = scene.palette;
+        mTimeAtlas.drawGlyph(canvas, ':', layout.colonX, layout.baseline, mTimePaints.get(palette.colon));
+        Paint datePaint = mDatePaints.get(palette.date);
+        mDateAtlas.drawText(canvas, scene.date, layout.dateX, layout.dateY, datePaint);
+        mDateAtlas.drawText(canvas, scene.companion, scene.companionX(), layout.companionY, datePaint);
+        Paint rowPaint = mDatePaints.get(palette.row);
+        for (ClockRow row : scene.rows) {
+            if (row.visible && row.hasColon()) mDateAtlas.drawGlyph(canvas, ':', row.colonX, row.baseline, rowPaint);
+        }
+        mStatic.endRecording();
+        mStaticValid = true;
+    }
+
+}
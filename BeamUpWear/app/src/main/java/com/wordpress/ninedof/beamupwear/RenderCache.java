@@ -0,0 +1,199 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Font metrics and rasterized glyph atlases from an earlier run, so a restarted face can show its
+ * first frame without measuring or rasterizing any text. Kept as one file in app-private storage,
+ * named after its key: surface size, shape and FONT_VERSION. The header also carries the file
+ * format and app version, and each atlas its character set, and any mismatch is a miss. Files for other keys are
+ * deleted whenever a new one is written.
+ */
+final class RenderCache {
+
+    // Bump whenever res/font/imagine changes
+    static final int FONT_VERSION = 1;
+
+    private static final int MAGIC = 0x42555243;
+    // Bump whenever the file layout changes, older files are then a miss
+    private static final int FORMAT = 2;
+    private static final String PREFIX = "render_", SUFFIX = ".bin";
+
+    static final class Entry {
+        int timeSize, colonSize, dateSize;
+        GlyphAtlas timeAtlas, dateAtlas;
+
+        void recycle() {
+            if (timeAtlas != null) timeAtlas.recycle();
+            if (dateAtlas != null) dateAtlas.recycle();
+        }
+    }
+
+    private final File mDir;
+
+    RenderCache(File dir) {
+        mDir = dir;
+    }
+
+    /**
+     * Map the file for this key and restore it, the atlas pixels are copied straight from the
+     * mapping into their bitmaps.
+     *
+     * @return null if there is no usable file for the key
+     */
+    Entry load(int width, int height, boolean isRound, String timeChars, String dateChars) {
+        File file = fileFor(width, height, isRound);
+        if (!file.exists()) return null;
+
+        Entry entry = new Entry();
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT || buffer.getInt() != BuildConfig.VERSION_CODE) {
+                file.delete();
+                return null;
+            }
+
+            entry.timeSize = buffer.getInt();
+            entry.colonSize = buffer.getInt();
+            entry.dateSize = buffer.getInt();
+            entry.timeAtlas = readAtlas(buffer, timeChars, isRound);
+            if (entry.timeAtlas != null) entry.dateAtlas = readAtlas(buffer, dateChars, isRound);
+            if (entry.timeAtlas != null && entry.dateAtlas != null) return entry;
+        } catch (IOException | RuntimeException e) {
+            // Truncated or from an older layout, measured again and replaced below
+        } finally {
+            close(input);
+        }
+
+        entry.recycle();
+        file.delete();
+        return null;
+    }
+
+    /**
+     * Copy the atlas pixels now, on the thread that owns the atlases, for a write by the returned
+     * Runnable on any other. The atlases can be recycled in between.
+     */
+    Runnable prepareSave(final int width, final int height, final boolean isRound, final Entry entry) {
+        final ByteBuffer timePixels = copyPixels(entry.timeAtlas), datePixels = copyPixels(entry.dateAtlas);
+        return new Runnable() {
+            @Override
+            public void run() {
+                save(width, height, isRound, entry, timePixels, datePixels);
+            }
+        };
+    }
+
+    // Writes through a temporary file, so a crash mid-write never leaves a partial entry
+    private void save(int width, int height, boolean isRound, Entry entry, ByteBuffer timePixels,
+                      ByteBuffer datePixels) {
+        File file = fileFor(width, height, isRound);
+        File temp = new File(mDir, file.getName() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT);
+            output.writeInt(BuildConfig.VERSION_CODE);
+            output.writeInt(entry.timeSize);
+            output.writeInt(entry.colonSize);
+            output.writeInt(entry.dateSize);
+            writeAtlas(output, entry.timeAtlas, timePixels);
+            writeAtlas(output, entry.dateAtlas, datePixels);
+            output.close();
+            output = null;
+
+            if (!temp.renameTo(file)) return;
+        } catch (IOException e) {
+            return;
+        } finally {
+            close(output);
+            temp.delete();
+        }
+
+        // Only one key is ever current
+        File[] files = mDir.listFiles();
+        if (files == null) return;
+        for (File other : files) {
+            String name = other.getName();
+            if (name.startsWith(PREFIX) && name.endsWith(SUFFIX) && !name.equals(file.getName())) other.delete();
+        }
+    }
+
+    private File fileFor(int width, int height, boolean isRound) {
+        return new File(mDir, PREFIX + width + "x" + height + (isRound ? "_round_" : "_square_") + FONT_VERSION + SUFFIX);
+    }
+
+    private static GlyphAtlas readAtlas(ByteBuffer buffer, String chars, boolean isRound) {
+        float textSize = buffer.getFloat();
+        int count = buffer.getInt();
+        if (count != chars.length()) return null;
+
+        float[] advances = new float[count];
+        int[] inkBounds = new int[count * GlyphAtlasLayout.BOUNDS_PER_CHAR];
+        for (int i = 0; i < count; i++) {
+            if (buffer.getChar() != chars.charAt(i)) return null;
+            advances[i] = buffer.getFloat();
+            for (int b = 0; b < GlyphAtlasLayout.BOUNDS_PER_CHAR; b++) {
+                inkBounds[(i * GlyphAtlasLayout.BOUNDS_PER_CHAR) + b] = buffer.getInt();
+            }
+        }
+        float ascent = buffer.getFloat();
+        float descent = buffer.getFloat();
+        float strokeWidth = buffer.getFloat();
+
+        int byteCount = buffer.getInt();
+        ByteBuffer pixels = buffer.slice();
+        pixels.limit(byteCount);
+        buffer.position(buffer.position() + byteCount);
+        return new GlyphAtlas(chars, textSize, isRound, advances, inkBounds, ascent, descent, strokeWidth, pixels);
+    }
+
+    private static ByteBuffer copyPixels(GlyphAtlas atlas) {
+        ByteBuffer pixels = ByteBuffer.allocate(atlas.byteCount());
+        atlas.copyPixels(pixels);
+        return pixels;
+    }
+
+    // Everything but the pixels is final in the atlas, and still readable once it is recycled
+    private static void writeAtlas(DataOutputStream output, GlyphAtlas atlas, ByteBuffer pixels) throws IOException {
+        String chars = atlas.layout.chars;
+        output.writeFloat(atlas.textSize);
+        output.writeInt(chars.length());
+        for (int i = 0; i < chars.length(); i++) {
+            output.writeChar(chars.charAt(i));
+            output.writeFloat(atlas.advances[i]);
+            for (int b = 0; b < GlyphAtlasLayout.BOUNDS_PER_CHAR; b++) {
+                output.writeInt(atlas.inkBounds[(i * GlyphAtlasLayout.BOUNDS_PER_CHAR) + b]);
+            }
+        }
+        output.writeFloat(atlas.ascent);
+        output.writeFloat(atlas.descent);
+        output.writeFloat(atlas.strokeWidth);
+
+        output.writeInt(pixels.capacity());
+        output.write(pixels.array());
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to write
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out how long to sleep until the next second of the minute that has something to show,
+ * so the interactive timer wakes only for those instead of every second. Frames in between
+ * are produced by whatever animation is running, not by this schedule.
+ */
+final class TickScheduler {
+
+    private static final long
+        MS_PER_SECOND = TimeUnit.SECONDS.toMillis(1),
+        MS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    // Seconds of the minute handled by FaceController, and all of them for the seconds row
+    static final int[] FACE_SECONDS = { 0, 1, 15, 30, 45, 59 };
+    static final int[] EVERY_SECOND = new int[60];
+    static {
+        for (int i = 0; i < EVERY_SECOND.length; i++) EVERY_SECOND[i] = i;
+    }
+
+    interface Clock {
+        long currentTimeMillis();
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final Clock mClock;
+    private final int[] mEventSeconds;
+
+    /**
+     * @param clock        Source of wall time
+     * @param eventSeconds Seconds of the minute (0-59) with a visual event
+     */
+    TickScheduler(Clock clock, int... eventSeconds) {
+        if (eventSeconds.length == 0) throw new IllegalArgumentException("No event seconds");
+
+        mClock = clock;
+        mEventSeconds = eventSeconds.clone();
+        Arrays.sort(mEventSeconds);
+    }
+
+    long getDelayToNextEvent() {
+        return getDelayToNextEvent(mClock.currentTimeMillis());
+    }
+
+    // Strictly after nowMs, so a wakeup exactly on an event schedules the following one
+    long getDelayToNextEvent(long nowMs) {
+        long msIntoMinute = Math.floorMod(nowMs, MS_PER_MINUTE);
+        for (int second : mEventSeconds) {
+            long eventMs = second * MS_PER_SECOND;
+            if (eventMs > msIntoMinute) return eventMs - msIntoMinute;
+        }
+        return MS_PER_MINUTE + (mEventSeconds[0] * MS_PER_SECOND) - msIntoMinute;
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.nio.CharBuffer;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits epoch millis into the fields the face displays using integer arithmetic only, in place
+ * of Calendar and String.format(). The zone offset is cached per UTC quarter hour, which is the
+ * granularity of every DST and zone offset transition, so the lookup happens at most four times
+ * an hour. Nothing is allocated after construction.
+ */
+final class TimeDecomposer {
+
+    private static final long
+        MS_PER_SECOND = TimeUnit.SECONDS.toMillis(1),
+        MS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1),
+        MS_PER_HOUR = TimeUnit.HOURS.toMillis(1),
+        MS_PER_DAY = TimeUnit.DAYS.toMillis(1),
+        OFFSET_BUCKET_MS = TimeUnit.MINUTES.toMillis(15);
+
+    // Indexed by Calendar.DAY_OF_WEEK - 1
+    private static final String DAY_NAMES = "SUNMONTUEWEDTHUFRISAT";
+    private static final int DATE_LENGTH = 6;
+
+    long millis;
+    int hour, minute, second, millisecond;
+    int year, month, dayOfMonth, dayOfWeek;
+
+    // Otherwise hours run 12, 01 .. 11
+    boolean is24Hour = true;
+
+    // "MON 05", rewritten in place by updateDateLabel()
+    private final char[] mDateChars = new char[DATE_LENGTH];
+    final CharSequence dateLabel = CharBuffer.wrap(mDateChars);
+
+    private TimeZone mZone;
+    private long mOffsetBucket = Long.MIN_VALUE;
+    private int mOffsetMs;
+
+    TimeDecomposer(TimeZone zone) {
+        setTimeZone(zone);
+    }
+
+    void setTimeZone(TimeZone zone) {
+        mZone = zone;
+        mOffsetBucket = Long.MIN_VALUE;
+    }
+
+    void setTime(long millis) {
+        this.millis = millis;
+        long bucket = Math.floorDiv(millis, OFFSET_BUCKET_MS);
+        if (bucket != mOffsetBucket) {
+            mOffsetBucket = bucket;
+            mOffsetMs = mZone.getOffset(millis);
+        }
+
+        long local = millis + mOffsetMs;
+        long days = Math.floorDiv(local, MS_PER_DAY);
+        int msOfDay = (int) (local - (days * MS_PER_DAY));
+
+        hour = (int) (msOfDay / MS_PER_HOUR);
+        minute = (int) ((msOfDay % MS_PER_HOUR) / MS_PER_MINUTE);
+        second = (int) ((msOfDay % MS_PER_MINUTE) / MS_PER_SECOND);
+        millisecond = (int) (msOfDay % MS_PER_SECOND);
+
+        // 1970-01-01 was a Thursday
+        dayOfWeek = (int) Math.floorMod(days + 4, 7L) + Calendar.SUNDAY;
+
+        // Civil date from days since epoch, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        int doe = (int) (z - (era * 146097));
+        int yoe = (doe - (doe / 1460) + (doe / 36524) - (doe / 146096)) / 365;
+        int doy = doe - ((365 * yoe) + (yoe / 4) - (yoe / 100));
+        int mp = ((5 * doy) + 2) / 153;
+        dayOfMonth = doy - (((153 * mp) + 2) / 5) + 1;
+        month = mp < 10 ? mp + 3 : mp - 9;
+        year = (int) (yoe + (era * 400)) + (month <= 2 ? 1 : 0);
+    }
+
+    boolean isSameMinute(TimeDecomposer other) {
+        return minute == other.minute && hour == other.hour && isSameDay(other);
+    }
+
+    boolean isSameDay(TimeDecomposer other) {
+        return dayOfMonth == other.dayOfMonth && month == other.month && year == other.year;
+    }
+
+    // Digit of HH:MM, 0 is the tens of the hour and 3 the units of the minute
+    int timeDigit(int index) {
+        int displayHour = is24Hour ? hour : (hour % 12 == 0 ? 12 : hour % 12);
+        switch (index) {
+            case 0: return displayHour / 10;
+            case 1: return displayHour % 10;
+            case 2: return minute / 10;
+            default: return minute % 10;
+        }
+    }
+
+    /**
+     * Rewrite dateLabel for the current time.
+     *
+     * @return true if the label text changed
+     */
+    boolean updateDateLabel() {
+        int nameStart = (dayOfWeek - Calendar.SUNDAY) * 3;
+        char tens = (char) ('0' + (dayOfMonth / 10));
+        char units = (char) ('0' + (dayOfMonth % 10));
+        if (mDateChars[0] == DAY_NAMES.charAt(nameStart) && mDateChars[1] == DAY_NAMES.charAt(nameStart + 1)
+                && mDateChars[2] == DAY_NAMES.charAt(nameStart + 2)
+                && mDateChars[4] == tens && mDateChars[5] == units) {
+            return false;
+        }
+
+        DAY_NAMES.getChars(nameStart, nameStart + 3, mDateChars, 0);
+        mDateChars[3] = ' ';
+        mDateChars[4] = tens;
+        mDateChars[5] = units;
+        return true;
+    }
+
+}
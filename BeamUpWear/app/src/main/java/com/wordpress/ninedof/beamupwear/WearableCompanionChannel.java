@@ -0,0 +1,73 @@
+package com.wordpress.ninedof.beamupwear;
+
+import android.content.Context;
+
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.wearable.DataClient;
+import com.google.android.gms.wearable.DataEvent;
+import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.Wearable;
+
+/**
+ * Companion values from the Wearable data layer. The phone puts one DataItem per field, at PATH
+ * followed by the field's key (CompanionData.FIELD_KEYS), its DataMap holding that key. The data
+ * layer keeps the last item at each path, so every field is recovered at startup however long ago
+ * the phone last sent it.
+ */
+final class WearableCompanionChannel implements CompanionChannel, DataClient.OnDataChangedListener {
+
+    static final String PATH = "/beamup/companion/";
+
+    private final DataClient mClient;
+    private Listener mListener;
+
+    WearableCompanionChannel(Context context) {
+        mClient = Wearable.getDataClient(context);
+    }
+
+    @Override
+    public void start(Listener listener) {
+        mListener = listener;
+        mClient.addListener(this);
+
+        // Pick up whatever the phone sent while the face wasn't running
+        mClient.getDataItems().addOnSuccessListener(new OnSuccessListener<DataItemBuffer>() {
+            @Override
+            public void onSuccess(DataItemBuffer items) {
+                for (int i = 0; i < items.getCount(); i++) deliver(items.get(i));
+                items.release();
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        mClient.removeListener(this);
+        mListener = null;
+    }
+
+    @Override
+    public void onDataChanged(DataEventBuffer events) {
+        for (int i = 0; i < events.getCount(); i++) {
+            DataEvent event = events.get(i);
+            if (event.getType() == DataEvent.TYPE_CHANGED) deliver(event.getDataItem());
+        }
+    }
+
+    private void deliver(DataItem item) {
+        String path = item.getUri().getPath();
+        if (mListener == null || path == null || !path.startsWith(PATH)) return;
+
+        String key = path.substring(PATH.length());
+        int field = CompanionData.fieldOf(key);
+        if (field < 0) return;
+
+        DataMap map = DataMapItem.fromDataItem(item).getDataMap();
+        if (map.containsKey(key)) mListener.onFieldChanged(field, map.getInt(key));
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompanionDataTest {
+
+    private static final long INTERVAL_MS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final class FakeClock implements TickScheduler.Clock {
+        long nowMs = 1538384400000L;
+
+        @Override
+        public long currentTimeMillis() {
+            return nowMs;
+        }
+    }
+
+    private final FakeClock mClock = new FakeClock();
+    private final CompanionData mData = new CompanionData(mClock, INTERVAL_MS);
+
+    @Test
+    public void longestLabelFitsWhole() {
+        mData.offer(CompanionData.FIELD_EVENT_START, (23 * 60) + 59);
+        mData.offer(CompanionData.FIELD_BATTERY, 100);
+        mData.offer(CompanionData.FIELD_TEMPERATURE, -99);
+        mData.offer(CompanionData.FIELD_TEMPERATURE_UNIT, 'C');
+        assertTrue(mData.flush());
+
+        assertEquals("23:59 100% -99C", mData.label.toString());
+        assertEquals(CompanionData.LABEL_CAPACITY, mData.label.length());
+    }
+
+    @Test
+    public void labelSkipsUnsetFields() {
+        mData.offer(CompanionData.FIELD_TEMPERATURE, 12);
+        mData.offer(CompanionData.FIELD_TEMPERATURE_UNIT, 'F');
+        mData.flush();
+        assertEquals("12F", mData.label.toString());
+
+        mData.offer(CompanionData.FIELD_EVENT_START, (9 * 60) + 5);
+        mData.offer(CompanionData.FIELD_BATTERY, 80);
+        mData.flush();
+        assertEquals("9:05 80% 12F", mData.label.toString());
+    }
+
+    // A token too long for what is left is dropped rather than cut
+    @Test
+    public void overlongTokenIsDropped() {
+        mData.offer(CompanionData.FIELD_EVENT_START, (23 * 60) + 59);
+        mData.offer(CompanionData.FIELD_BATTERY, 100);
+        mData.offer(CompanionData.FIELD_TEMPERATURE, -100);
+        mData.flush();
+        assertEquals("23:59 100%", mData.label.toString());
+    }
+
+    @Test
+    public void offersCoalesceUntilFlush() {
+        assertTrue(mData.offer(CompanionData.FIELD_BATTERY, 50));
+        assertFalse(mData.offer(CompanionData.FIELD_BATTERY, 60));
+        assertFalse(mData.offer(CompanionData.FIELD_TEMPERATURE, 20));
+        assertTrue(mData.flush());
+        assertEquals(60, mData.getValue(CompanionData.FIELD_BATTERY));
+
+        // Same value again changes nothing
+        assertTrue(mData.offer(CompanionData.FIELD_BATTERY, 60));
+        assertFalse(mData.flush());
+        assertFalse(mData.flush());
+    }
+
+    @Test
+    public void flushesAtMostOncePerInterval() {
+        assertEquals(0, mData.getDelayToFlush());
+        mData.offer(CompanionData.FIELD_BATTERY, 50);
+        mData.flush();
+        assertEquals(INTERVAL_MS, mData.getDelayToFlush());
+
+        mClock.nowMs += INTERVAL_MS / 4;
+        assertEquals((3 * INTERVAL_MS) / 4, mData.getDelayToFlush());
+        mClock.nowMs += INTERVAL_MS;
+        assertEquals(0, mData.getDelayToFlush());
+    }
+
+    @Test
+    public void unknownFieldsAreIgnored() {
+        assertEquals(-1, CompanionData.fieldOf("altitude"));
+        assertEquals(CompanionData.FIELD_BATTERY, CompanionData.fieldOf("battery"));
+        assertFalse(mData.offer(CompanionData.NUM_FIELDS, 1));
+        assertFalse(mData.flush());
+    }
+
+}
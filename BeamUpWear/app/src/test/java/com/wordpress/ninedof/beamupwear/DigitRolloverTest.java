@@ -0,0 +1,128 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Every minute of whole local days, in 12 and 24 hour, checked against the digits Calendar shows
+ * for the same instants: an ordinary day, the spring-forward and fall-back days, and a zone whose
+ * DST shift is half an hour.
+ */
+public class DigitRolloverTest {
+
+    private static final long MS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    // Dates of the local days checked, in each zone
+    private static final int[][] ORDINARY_DAY = { { 2018, Calendar.OCTOBER, 1 } };
+    private static final int[][] NEW_YORK_SHIFTS = {
+        { 2018, Calendar.MARCH, 11 }, { 2018, Calendar.NOVEMBER, 4 }
+    };
+    private static final int[][] LORD_HOWE_SHIFTS = {
+        { 2018, Calendar.APRIL, 1 }, { 2018, Calendar.OCTOBER, 7 }
+    };
+
+    @Test
+    public void everyMinuteOfAnOrdinaryDay() {
+        assertDays("UTC", ORDINARY_DAY, 24 * 60);
+        assertDays("Europe/London", ORDINARY_DAY, 24 * 60);
+    }
+
+    @Test
+    public void springForwardAndFallBack() {
+        int[] minutes = assertDays("America/New_York", NEW_YORK_SHIFTS, -1);
+        assertEquals(23 * 60, minutes[0]);
+        assertEquals(25 * 60, minutes[1]);
+    }
+
+    @Test
+    public void halfHourShifts() {
+        int[] minutes = assertDays("Australia/Lord_Howe", LORD_HOWE_SHIFTS, -1);
+        assertEquals((24 * 60) + 30, minutes[0]);
+        assertEquals((24 * 60) - 30, minutes[1]);
+    }
+
+    @Test
+    public void nextMinuteIsTheFollowingBoundary() {
+        assertEquals(MS_PER_MINUTE, DigitRollover.nextMinute(0));
+        assertEquals(MS_PER_MINUTE, DigitRollover.nextMinute(MS_PER_MINUTE - 1));
+        assertEquals(2 * MS_PER_MINUTE, DigitRollover.nextMinute(MS_PER_MINUTE));
+        assertEquals(0, DigitRollover.nextMinute(-1));
+    }
+
+    /**
+     * Checks each minute of the given local days in both clock modes.
+     *
+     * @param expectedMinutes Minutes in each day, or -1 to return them for the caller to check
+     * @return The number of minutes in each day
+     */
+    private static int[] assertDays(String zoneId, int[][] days, int expectedMinutes) {
+        TimeZone zone = TimeZone.getTimeZone(zoneId);
+        int[] minutes = new int[days.length];
+        for (int d = 0; d < days.length; d++) {
+            Calendar calendar = Calendar.getInstance(zone);
+            calendar.clear();
+            calendar.set(days[d][0], days[d][1], days[d][2]);
+            long startMs = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            long endMs = calendar.getTimeInMillis();
+
+            minutes[d] = (int) ((endMs - startMs) / MS_PER_MINUTE);
+            if (expectedMinutes >= 0) assertEquals(zoneId, expectedMinutes, minutes[d]);
+
+            assertDay(zone, startMs, endMs, true);
+            assertDay(zone, startMs, endMs, false);
+        }
+        return minutes;
+    }
+
+    // The last second of each minute, as the Engine sees it at second 59
+    private static void assertDay(TimeZone zone, long startMs, long endMs, boolean is24Hour) {
+        Calendar calendar = Calendar.getInstance(zone);
+        TimeDecomposer next = new TimeDecomposer(zone);
+        next.is24Hour = is24Hour;
+        BeamUpScene.Digit[] shown = new BeamUpScene.Digit[BeamUpScene.NUM_DIGITS];
+        for (int i = 0; i < shown.length; i++) shown[i] = new BeamUpScene.Digit();
+
+        int[] shownDigits = new int[BeamUpScene.NUM_DIGITS], nextDigits = new int[BeamUpScene.NUM_DIGITS];
+        for (long minuteMs = startMs; minuteMs < endMs; minuteMs += MS_PER_MINUTE) {
+            long millis = minuteMs + TimeUnit.SECONDS.toMillis(59) + 500;
+            long nextMs = DigitRollover.nextMinute(millis);
+            assertEquals(minuteMs + MS_PER_MINUTE, nextMs);
+
+            calendarDigits(calendar, minuteMs, is24Hour, shownDigits);
+            calendarDigits(calendar, nextMs, is24Hour, nextDigits);
+            int expected = 0;
+            for (int i = 0; i < shown.length; i++) {
+                shown[i].value = shownDigits[i];
+                if (shownDigits[i] != nextDigits[i]) expected |= 1 << i;
+            }
+
+            next.setTime(nextMs);
+            String name = zone.getID() + (is24Hour ? " 24h " : " 12h ") + String.format("%tFT%<tT%<tz", calendar);
+            int mask = DigitRollover.changedDigits(shown, next);
+            assertEquals(name, expected, mask);
+            for (int i = 0; i < shown.length; i++) {
+                assertEquals(name, nextDigits[i], next.timeDigit(i));
+                assertEquals(name, shownDigits[i] != nextDigits[i], DigitRollover.isChanged(mask, i));
+            }
+        }
+    }
+
+    // HH:MM as Calendar has it, hours 12, 01 .. 11 on a 12 hour clock
+    private static void calendarDigits(Calendar calendar, long millis, boolean is24Hour, int[] digits) {
+        calendar.setTimeInMillis(millis);
+        int hour = is24Hour ? calendar.get(Calendar.HOUR_OF_DAY) : calendar.get(Calendar.HOUR);
+        if (!is24Hour && hour == 0) hour = 12;
+        int minute = calendar.get(Calendar.MINUTE);
+        digits[0] = hour / 10;
+        digits[1] = hour % 10;
+        digits[2] = minute / 10;
+        digits[3] = minute % 10;
+    }
+
+}
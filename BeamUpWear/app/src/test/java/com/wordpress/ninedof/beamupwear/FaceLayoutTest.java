@@ -0,0 +1,204 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Geometry of the face on the common surface sizes in both shapes, with glyph sizes scaled from
+ * the text sizes the way the imagine font measures.
+ */
+public class FaceLayoutTest {
+
+    private static final int[] SIZES = { 320, 390, 454 };
+    private static final int CHIN_HEIGHT = 30;
+    // "MON 05"
+    private static final int DATE_LENGTH = 6;
+
+    private static FaceLayout layout(int size, int chinHeight, boolean isRound) {
+        float timeTextSize = isRound ? BeamUpScene.TIME_SIZE_ROUND : BeamUpScene.TIME_SIZE_SQUARE;
+        float dateTextSize = isRound ? BeamUpScene.DATE_SIZE_ROUND : BeamUpScene.DATE_SIZE_SQUARE;
+        return new FaceLayout(size, size, chinHeight, isRound, Math.round(timeTextSize * 0.6f),
+                Math.round(timeTextSize * 0.3f), Math.round(dateTextSize * 0.6f));
+    }
+
+    @Test
+    public void timeBaselineSitsUnderCenteredDigits() {
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                FaceLayout layout = layout(size, 0, isRound);
+                String name = size + (isRound ? " round" : " square");
+
+                assertEquals(name, layout.timeTop + layout.timeSize, layout.baseline);
+                assertEquals(name, size / 2, (layout.timeTop + layout.baseline) / 2, 1);
+                assertEquals(name, size / 2, (layout.timeLeft + layout.timeRight) / 2, 1);
+            }
+        }
+    }
+
+    @Test
+    public void dateBaselineIsBelowTheBar() {
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                FaceLayout layout = layout(size, 0, isRound);
+                String name = size + (isRound ? " round" : " square");
+
+                assertEquals(name, layout.baseline + FaceLayout.SEPARATION, layout.barTop);
+                assertEquals(name, layout.barTop + FaceLayout.BAR_HEIGHT, layout.barBottom);
+                assertTrue(name, layout.dateY - layout.dateSize >= layout.barBottom);
+                assertTrue(name, layout.dateY < size);
+            }
+        }
+    }
+
+    // The chin is cut off the bottom, the time centers in what is left
+    @Test
+    public void chinMovesTheTimeUp() {
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                FaceLayout full = layout(size, 0, isRound);
+                FaceLayout chin = layout(size, CHIN_HEIGHT, isRound);
+                String name = size + (isRound ? " round" : " square");
+
+                assertEquals(name, (size - CHIN_HEIGHT) / 2, (chin.timeTop + chin.baseline) / 2, 1);
+                assertEquals(name, full.timeTop - (CHIN_HEIGHT / 2), chin.timeTop, 1);
+                assertEquals(name, full.baseline - chin.baseline, full.dateY - chin.dateY);
+                assertEquals(name, full.timeLeft, chin.timeLeft);
+                assertTrue(name, chin.dateY < size - CHIN_HEIGHT);
+            }
+        }
+    }
+
+    // Its own line under the date, as wide as the longest label where the screen allows
+    @Test
+    public void companionLineIsReservedUnderTheDate() {
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                FaceLayout layout = layout(size, 0, isRound);
+                String name = size + (isRound ? " round" : " square");
+
+                assertTrue(name, layout.companionY - layout.dateSize > layout.dateY);
+                assertTrue(name, layout.companionY < size);
+                assertEquals(name, size / 2, (layout.companionLeft + layout.companionRight) / 2, 1);
+                assertEquals(name, Math.min(size, CompanionData.LABEL_CAPACITY * layout.dateSize),
+                        layout.companionRight - layout.companionLeft);
+            }
+        }
+    }
+
+    @Test
+    public void digitsAndBeamsRunLeftToRight() {
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                FaceLayout layout = layout(size, 0, isRound);
+                String name = size + (isRound ? " round" : " square");
+
+                for (int i = 1; i < FaceLayout.NUM_COLUMNS; i++) {
+                    assertTrue(name, layout.digitX(i) > layout.digitX(i - 1) + layout.timeSize);
+                    assertTrue(name, layout.beamLeft(i) >= layout.beamRight(i - 1));
+                }
+                assertTrue(name, layout.colonX > layout.digitX(1) && layout.colonX < layout.digitX(2));
+            }
+        }
+    }
+
+    @Test
+    public void complicationSlotsFitTheVisibleScreen() {
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                for (int chinHeight : new int[] { 0, CHIN_HEIGHT }) {
+                    FaceLayout layout = layout(size, chinHeight, isRound);
+                    for (int slot = 0; slot < BeamUpScene.NUM_COMPLICATIONS; slot++) {
+                        String name = size + (isRound ? " round" : " square") + " chin " + chinHeight + " slot " + slot;
+
+                        assertTrue(name, layout.slotWidth(slot) > 0 && layout.slotHeight(slot) > 0);
+                        assertTrue(name, layout.slotLeft(slot) >= 0 && layout.slotRight(slot) <= size);
+                        assertTrue(name, layout.slotTop(slot) >= 0 && layout.slotBottom(slot) <= size - chinHeight);
+                        if (isRound) {
+                            assertInCircle(name, size, layout.slotLeft(slot), layout.slotTop(slot));
+                            assertInCircle(name, size, layout.slotRight(slot), layout.slotTop(slot));
+                            assertInCircle(name, size, layout.slotLeft(slot), layout.slotBottom(slot));
+                            assertInCircle(name, size, layout.slotRight(slot), layout.slotBottom(slot));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Top above the time, date between the bar and the date line's baseline, neither on a digit
+    @Test
+    public void complicationSlotsKeepClearOfTheTime() {
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                FaceLayout layout = layout(size, 0, isRound);
+                String name = size + (isRound ? " round" : " square");
+
+                assertTrue(name, layout.slotBottom(BeamUpScene.COMPLICATION_TOP) <= layout.timeTop);
+                assertEquals(name, size / 2, (layout.slotLeft(BeamUpScene.COMPLICATION_TOP)
+                        + layout.slotRight(BeamUpScene.COMPLICATION_TOP)) / 2, 1);
+                assertTrue(name, layout.slotTop(BeamUpScene.COMPLICATION_DATE) >= layout.barBottom);
+                assertTrue(name, layout.slotBottom(BeamUpScene.COMPLICATION_TOP)
+                        <= layout.slotTop(BeamUpScene.COMPLICATION_DATE));
+            }
+        }
+    }
+
+    // Neither the date, at its longest, nor the companion label's line may run into a slot
+    @Test
+    public void textKeepsClearOfTheSlots() {
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                for (int chinHeight : new int[] { 0, CHIN_HEIGHT }) {
+                    FaceLayout layout = layout(size, chinHeight, isRound);
+                    float dateTextSize = isRound ? BeamUpScene.DATE_SIZE_ROUND : BeamUpScene.DATE_SIZE_SQUARE;
+                    int ascent = Math.round(0.8f * dateTextSize), descent = Math.round(0.2f * dateTextSize);
+                    int dateLeft = layout.dateX - (DATE_LENGTH * layout.dateSize);
+                    String name = size + (isRound ? " round" : " square") + " chin " + chinHeight;
+
+                    for (int slot = 0; slot < BeamUpScene.NUM_COMPLICATIONS; slot++) {
+                        assertFalse(name + " date on slot " + slot, intersects(layout, slot,
+                                dateLeft, layout.dateY - ascent, layout.dateX, layout.dateY + descent));
+                        assertFalse(name + " companion on slot " + slot, intersects(layout, slot,
+                                layout.companionLeft, layout.companionY - ascent,
+                                layout.companionRight, layout.companionY + descent));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void slotAtFindsEachSlot() {
+        FaceLayout layout = layout(390, 0, true);
+        for (int slot = 0; slot < BeamUpScene.NUM_COMPLICATIONS; slot++) {
+            int x = (layout.slotLeft(slot) + layout.slotRight(slot)) / 2;
+            int y = (layout.slotTop(slot) + layout.slotBottom(slot)) / 2;
+            assertEquals(slot, layout.slotAt(x, y));
+            assertEquals(slot, layout.slotAt(layout.slotLeft(slot), layout.slotTop(slot)));
+            assertEquals(-1, layout.slotAt(layout.slotRight(slot), layout.slotBottom(slot)));
+        }
+        assertEquals(-1, layout.slotAt(layout.digitX(0), layout.baseline - 1));
+    }
+
+    @Test
+    public void matchesItsInputsOnly() {
+        FaceLayout layout = layout(390, CHIN_HEIGHT, true);
+        assertTrue(layout.matches(390, 390, CHIN_HEIGHT, true, layout.timeSize, layout.colonSize, layout.dateSize));
+        assertFalse(layout.matches(390, 390, 0, true, layout.timeSize, layout.colonSize, layout.dateSize));
+        assertFalse(layout.matches(390, 390, CHIN_HEIGHT, false, layout.timeSize, layout.colonSize, layout.dateSize));
+    }
+
+    private static boolean intersects(FaceLayout layout, int slot, int left, int top, int right, int bottom) {
+        return left < layout.slotRight(slot) && layout.slotLeft(slot) < right
+                && top < layout.slotBottom(slot) && layout.slotTop(slot) < bottom;
+    }
+
+    private static void assertInCircle(String name, int size, int x, int y) {
+        double radius = size / 2.0;
+        assertTrue(name + " corner " + x + "," + y, Math.hypot(x - radius, y - radius) <= radius);
+    }
+
+}
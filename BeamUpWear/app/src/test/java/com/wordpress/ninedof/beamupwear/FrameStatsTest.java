@@ -0,0 +1,89 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A minute transition fed vsync by vsync, drawing only where the timeline moved, as the pacer
+ * does: the holds between keyframes draw nothing and must not count as missed frames.
+ */
+public class FrameStatsTest {
+
+    private static final long START_NS = TimeUnit.SECONDS.toNanos(900);
+    private static final long DRAW_NS = TimeUnit.MILLISECONDS.toNanos(3);
+
+    @Test
+    public void holdsAreNotMissedFrames() {
+        FrameStats stats = new FrameStats("test");
+        int drawn = transition(stats, -1);
+
+        assertTrue(drawn > 0);
+        assertEquals(drawn, stats.transitionFrames());
+        assertEquals(0, stats.transitionMissed());
+        assertEquals(0, stats.recentMissedFrames());
+    }
+
+    @Test
+    public void skippedDrawIsMissed() {
+        FrameStats stats = new FrameStats("test");
+        // Partway down the first beam
+        transition(stats, 6);
+
+        assertEquals(1, stats.transitionMissed());
+        assertEquals(1, stats.recentMissedFrames());
+    }
+
+    @Test
+    public void resetForgetsMisses() {
+        FrameStats stats = new FrameStats("test");
+        transition(stats, 6);
+        stats.reset("other");
+
+        assertEquals(0, stats.transitionFrames());
+        assertEquals(0, stats.transitionMissed());
+        assertEquals(0, stats.recordedFrames());
+    }
+
+    /**
+     * One vsync per frame interval until the transition finishes, drawn if any track or the digit
+     * cut-out changed since the last one.
+     *
+     * @param skipFrame Vsync whose draw doesn't happen though it has damage, or -1
+     * @return Frames drawn
+     */
+    private static int transition(FrameStats stats, int skipFrame) {
+        float beam = MinuteTimeline.evaluate(MinuteTimeline.TRACK_BEAM, 0);
+        float digit = MinuteTimeline.evaluate(MinuteTimeline.TRACK_DIGIT, 0);
+        boolean hidden = MinuteTimeline.isDigitHidden(0);
+        int drawn = 0;
+        for (int frame = 1; ; frame++) {
+            long vsyncNs = START_NS + (frame * FramePacer.FRAME_INTERVAL_NS);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(frame * FramePacer.FRAME_INTERVAL_NS);
+            if (MinuteTimeline.isFinished(elapsedMs)) return drawn;
+
+            float nextBeam = MinuteTimeline.evaluate(MinuteTimeline.TRACK_BEAM, elapsedMs);
+            float nextDigit = MinuteTimeline.evaluate(MinuteTimeline.TRACK_DIGIT, elapsedMs);
+            boolean nextHidden = MinuteTimeline.isDigitHidden(elapsedMs);
+            boolean damaged = nextBeam != beam || nextDigit != digit || nextHidden != hidden;
+            beam = nextBeam;
+            digit = nextDigit;
+            hidden = nextHidden;
+
+            if (!damaged) {
+                stats.onIdleFrame();
+                continue;
+            }
+            stats.onAnimationUpdate(vsyncNs);
+            if (frame == skipFrame) continue;
+
+            stats.onDrawStart(vsyncNs);
+            stats.onDrawEnd(vsyncNs + DRAW_NS, true);
+            drawn++;
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cells for both atlas character sets, with metrics proportioned like the imagine font: plain
+ * glyphs inside their advance, then italic and stroked ones whose ink overhangs it.
+ */
+public class GlyphAtlasLayoutTest {
+
+    private static final String[] CHAR_SETS = { GlyphAtlasLayout.TIME_CHARS, GlyphAtlasLayout.DATE_CHARS };
+    private static final float TEXT_SIZE = 40;
+    private static final float ASCENT = -0.8f * TEXT_SIZE, DESCENT = 0.2f * TEXT_SIZE;
+    private static final int PADDING = 1;
+
+    private static float[] advances(String chars) {
+        float[] advances = new float[chars.length()];
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            advances[i] = TEXT_SIZE * ((c == ':' || c == ' ') ? 0.3f : 0.61f);
+        }
+        return advances;
+    }
+
+    // Ink from the origin across the advance, from the cap height to the baseline
+    private static int[] plainInk(float[] advances) {
+        int[] bounds = new int[advances.length * GlyphAtlasLayout.BOUNDS_PER_CHAR];
+        for (int i = 0; i < advances.length; i++) {
+            int b = i * GlyphAtlasLayout.BOUNDS_PER_CHAR;
+            bounds[b + 1] = Math.round(-0.7f * TEXT_SIZE);
+            bounds[b + 2] = (int) advances[i];
+        }
+        return bounds;
+    }
+
+    // Slanted: the foot left of the origin, the top past the advance and above the ascent
+    private static int[] italicInk(float[] advances) {
+        int[] bounds = plainInk(advances);
+        for (int i = 0; i < advances.length; i++) {
+            int b = i * GlyphAtlasLayout.BOUNDS_PER_CHAR;
+            bounds[b] = -3;
+            bounds[b + 1] = (int) ASCENT - 2;
+            bounds[b + 2] = (int) advances[i] + 5;
+            bounds[b + 3] = (int) DESCENT + 1;
+        }
+        return bounds;
+    }
+
+    @Test
+    public void cellsPackIntoOneRow() {
+        for (String chars : CHAR_SETS) {
+            float[] advances = advances(chars);
+            GlyphAtlasLayout layout = new GlyphAtlasLayout(chars, advances, plainInk(advances), ASCENT, DESCENT, 0, PADDING);
+
+            int x = 0;
+            for (int i = 0; i < chars.length(); i++) {
+                assertEquals(chars, i, layout.indexOf(chars.charAt(i)));
+                assertEquals(chars, x, layout.cellLeft(i));
+                x += layout.cellWidth(i);
+            }
+            assertEquals(chars, x, layout.atlasWidth);
+            assertEquals(-1, layout.indexOf('x'));
+            assertEquals(-1, layout.indexOf('\u00e9'));
+        }
+    }
+
+    // Ink inside the advance and the font's metrics, the cells are just those padded
+    @Test
+    public void plainCellsAreTheAdvancePadded() {
+        for (String chars : CHAR_SETS) {
+            float[] advances = advances(chars);
+            GlyphAtlasLayout layout = new GlyphAtlasLayout(chars, advances, plainInk(advances), ASCENT, DESCENT, 0, PADDING);
+
+            assertEquals(chars, (int) Math.floor(ASCENT), layout.ascent);
+            assertEquals(chars, (int) Math.ceil(DESCENT) - (int) Math.floor(ASCENT) + (2 * PADDING), layout.cellHeight);
+            assertEquals(chars, PADDING - layout.ascent, layout.baseline());
+            assertEquals(chars, 100 - layout.baseline(), layout.destTop(100));
+            assertEquals(chars, PADDING, layout.overhangLeft);
+            for (int i = 0; i < chars.length(); i++) {
+                assertEquals(chars, (int) Math.ceil(advances[i]) + (2 * PADDING), layout.cellWidth(i));
+                assertEquals(chars, Math.round(advances[i]), layout.advance(i));
+                assertEquals(chars, PADDING, layout.originX(i));
+                // Right aligned at 200, the glyph's origin is its advance to the left
+                assertEquals(chars, 200 - layout.advance(i), layout.destLeft(i, 200) + layout.originX(i));
+            }
+        }
+    }
+
+    @Test
+    public void overhangingInkStaysInItsCell() {
+        for (String chars : CHAR_SETS) {
+            float[] advances = advances(chars);
+            int[] ink = italicInk(advances);
+            for (float strokeWidth : new float[] { 0, 2, 3 }) {
+                GlyphAtlasLayout layout = new GlyphAtlasLayout(chars, advances, ink, ASCENT, DESCENT, strokeWidth, PADDING);
+                String name = chars + " stroke " + strokeWidth;
+
+                for (int i = 0; i < chars.length(); i++) {
+                    int b = i * GlyphAtlasLayout.BOUNDS_PER_CHAR;
+                    int originX = layout.cellLeft(i) + layout.originX(i);
+                    float half = strokeWidth / 2;
+                    assertTrue(name, originX + ink[b] - half >= layout.cellLeft(i) + PADDING);
+                    assertTrue(name, originX + ink[b + 2] + half <= layout.cellLeft(i) + layout.cellWidth(i) - PADDING);
+                    assertTrue(name, layout.baseline() + ink[b + 1] - half >= PADDING);
+                    assertTrue(name, layout.baseline() + ink[b + 3] + half <= layout.cellHeight - PADDING);
+
+                    // What the scene clips text by covers every cell
+                    assertTrue(name, layout.originX(i) <= layout.overhangLeft);
+                    assertTrue(name, layout.cellWidth(i) - layout.originX(i) - layout.advance(i) <= layout.overhangRight);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void measureAddsTheAdvances() {
+        float[] advances = advances(GlyphAtlasLayout.DATE_CHARS);
+        GlyphAtlasLayout layout = new GlyphAtlasLayout(GlyphAtlasLayout.DATE_CHARS, advances, plainInk(advances),
+                ASCENT, DESCENT, 0, PADDING);
+        int expected = 0;
+        for (char c : "MON 05".toCharArray()) expected += layout.advance(layout.indexOf(c));
+
+        assertEquals(expected, layout.measure("MON 05"));
+        // Characters outside the set take no room
+        assertEquals(expected, layout.measure("MON 05x"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesMissingInkBounds() {
+        float[] advances = advances(GlyphAtlasLayout.TIME_CHARS);
+        new GlyphAtlasLayout(GlyphAtlasLayout.TIME_CHARS, advances, new int[advances.length], ASCENT, DESCENT, 0, PADDING);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InputLogTest {
+
+    @Test
+    public void eventsReadBackAsWritten() throws IOException {
+        InputLog log = new InputLog();
+        log.rows("", true);
+        log.rows("Asia/Tokyo", false);
+        log.theme("ice", true, 5405250);
+        log.companion("10:30 84% 12C");
+        log.companion("");
+        log.complication(1, false);
+
+        List<InputLog.Event> events = read(log);
+        assertEquals(6, events.size());
+
+        assertEquals(InputLog.ROWS, events.get(0).kind);
+        assertEquals("-", events.get(0).arg(0));
+        assertTrue(events.get(0).flag(1));
+        assertEquals("Asia/Tokyo", events.get(1).arg(0));
+        assertFalse(events.get(1).flag(1));
+
+        assertEquals(InputLog.THEME, events.get(2).kind);
+        assertEquals("ice", events.get(2).arg(0));
+        assertTrue(events.get(2).flag(1));
+        assertEquals(5405250, events.get(2).longArg(2));
+
+        assertEquals(InputLog.COMPANION, events.get(3).kind);
+        assertEquals("10:30 84% 12C", events.get(3).rest(0));
+        assertEquals("", events.get(4).rest(0));
+
+        assertEquals(InputLog.COMPLICATION, events.get(5).kind);
+        assertEquals(1, events.get(5).longArg(0));
+        assertFalse(events.get(5).flag(1));
+    }
+
+    // Past its size limit the log keeps taking calls, and leaves a marker that read() refuses
+    @Test
+    public void truncatedLogIsRefused() throws IOException {
+        InputLog log = new InputLog();
+        for (int i = 0; i < 100000; i++) log.vsync(5400006000000L + i);
+
+        StringWriter writer = new StringWriter();
+        log.writeTo(writer);
+        String text = writer.toString();
+        assertEquals(text.indexOf(InputLog.TRUNCATED), text.lastIndexOf(InputLog.TRUNCATED));
+        assertTrue(text.endsWith(InputLog.TRUNCATED + "\n"));
+        try {
+            InputLog.read(new StringReader(text));
+            fail("Read a truncated log");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static List<InputLog.Event> read(InputLog log) throws IOException {
+        StringWriter writer = new StringWriter();
+        log.writeTo(writer);
+        return InputLog.read(new StringReader(writer.toString()));
+    }
+
+}
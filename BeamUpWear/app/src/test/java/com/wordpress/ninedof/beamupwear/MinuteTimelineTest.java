@@ -0,0 +1,89 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The keyframe table against the sequence it was compiled from: beam down 0-300, up 1700-2000,
+ * digit up 450-750, down 1150-1450, cut out until 1650.
+ */
+public class MinuteTimelineTest {
+
+    private static final float DELTA = 1e-6f;
+
+    @Test
+    public void beamKeyframes() {
+        int beam = MinuteTimeline.TRACK_BEAM;
+        assertEquals(0f, MinuteTimeline.evaluate(beam, 0), DELTA);
+        assertEquals(0.5f, MinuteTimeline.evaluate(beam, 150), DELTA);
+        assertEquals(1f, MinuteTimeline.evaluate(beam, 300), DELTA);
+        assertEquals(1f, MinuteTimeline.evaluate(beam, 1000), DELTA);
+        assertEquals(1f, MinuteTimeline.evaluate(beam, 1700), DELTA);
+        assertEquals(0.5f, MinuteTimeline.evaluate(beam, 1850), DELTA);
+        assertEquals(0f, MinuteTimeline.evaluate(beam, 2000), DELTA);
+        assertEquals(0f, MinuteTimeline.evaluate(beam, 60000), DELTA);
+    }
+
+    @Test
+    public void digitKeyframes() {
+        int digit = MinuteTimeline.TRACK_DIGIT;
+        assertEquals(1f, MinuteTimeline.evaluate(digit, 0), DELTA);
+        assertEquals(1f, MinuteTimeline.evaluate(digit, 450), DELTA);
+        assertEquals(0.5f, MinuteTimeline.evaluate(digit, 600), DELTA);
+        assertEquals(0f, MinuteTimeline.evaluate(digit, 750), DELTA);
+        assertEquals(0f, MinuteTimeline.evaluate(digit, 1150), DELTA);
+        assertEquals(0.5f, MinuteTimeline.evaluate(digit, 1300), DELTA);
+        assertEquals(1f, MinuteTimeline.evaluate(digit, 1450), DELTA);
+        assertEquals(1f, MinuteTimeline.evaluate(digit, 2000), DELTA);
+    }
+
+    // Eased, so each move starts and ends slower than it runs through its middle
+    @Test
+    public void movesAreEased() {
+        int beam = MinuteTimeline.TRACK_BEAM;
+        assertTrue(MinuteTimeline.evaluate(beam, 30) < 0.1f);
+        assertTrue(MinuteTimeline.evaluate(beam, 270) > 0.9f);
+
+        float previous = -1;
+        for (int t = 0; t <= MinuteTimeline.BEAM_DURATION; t++) {
+            float value = MinuteTimeline.evaluate(beam, t);
+            assertTrue("t " + t, value >= previous);
+            previous = value;
+        }
+        assertEquals(0f, MinuteTimeline.ease(0), DELTA);
+        assertEquals(1f, MinuteTimeline.ease(1), DELTA);
+    }
+
+    @Test
+    public void digitHiddenWhileCutOut() {
+        assertFalse(MinuteTimeline.isDigitHidden(0));
+        assertFalse(MinuteTimeline.isDigitHidden(449));
+        assertTrue(MinuteTimeline.isDigitHidden(450));
+        assertTrue(MinuteTimeline.isDigitHidden(1649));
+        assertFalse(MinuteTimeline.isDigitHidden(1650));
+        assertEquals(450, MinuteTimeline.DIGIT_HIDE_START);
+        assertEquals(1650, MinuteTimeline.DIGIT_HIDE_END);
+    }
+
+    @Test
+    public void finishedWithTheBeam() {
+        assertEquals(2000, MinuteTimeline.DURATION);
+        assertFalse(MinuteTimeline.isFinished(1999));
+        assertTrue(MinuteTimeline.isFinished(2000));
+    }
+
+    @Test
+    public void themeFade() {
+        int theme = MinuteTimeline.TRACK_THEME;
+        assertEquals(0f, MinuteTimeline.evaluate(theme, 0), DELTA);
+        assertEquals(0.5f, MinuteTimeline.evaluate(theme, 300), DELTA);
+        assertEquals(1f, MinuteTimeline.evaluate(theme, 600), DELTA);
+        assertEquals(1f, MinuteTimeline.evaluate(theme, 2000), DELTA);
+        assertFalse(MinuteTimeline.isThemeFadeFinished(599));
+        assertTrue(MinuteTimeline.isThemeFadeFinished(600));
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sleeps the interactive timer through an hour on a fake clock, as the Engine does: wake, read the
+ * clock, sleep for getDelayToNextEvent().
+ */
+public class TickSchedulerTest {
+
+    private static final long MS_PER_SECOND = TimeUnit.SECONDS.toMillis(1);
+    private static final long MS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final int MINUTES = 60;
+
+    // 2018-10-01 09:00:12.345 UTC, started mid-minute
+    private static final long START_MS = 1538384412345L;
+
+    private static final class FakeClock implements TickScheduler.Clock {
+        long nowMs = START_MS;
+
+        @Override
+        public long currentTimeMillis() {
+            return nowMs;
+        }
+    }
+
+    @Test
+    public void wakesSixTimesAMinute() {
+        assertWakeups(TickScheduler.FACE_SECONDS, 0);
+    }
+
+    @Test
+    public void wakesEverySecondWithTheSecondsRow() {
+        assertWakeups(TickScheduler.EVERY_SECOND, 0);
+    }
+
+    // Handler messages arrive a little late, which must not skip an event or wake twice for one
+    @Test
+    public void lateWakeupsKeepTheSchedule() {
+        assertWakeups(TickScheduler.FACE_SECONDS, 40);
+        assertWakeups(TickScheduler.EVERY_SECOND, 40);
+    }
+
+    @Test
+    public void wakeupOnAnEventSchedulesTheNextOne() {
+        TickScheduler scheduler = new TickScheduler(new FakeClock(), TickScheduler.FACE_SECONDS);
+        assertEquals(MS_PER_SECOND, scheduler.getDelayToNextEvent(0));
+        assertEquals(14 * MS_PER_SECOND, scheduler.getDelayToNextEvent(MS_PER_SECOND));
+        assertEquals(MS_PER_SECOND, scheduler.getDelayToNextEvent(59 * MS_PER_SECOND));
+        assertEquals(1, scheduler.getDelayToNextEvent((59 * MS_PER_SECOND) + 999));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoEvents() {
+        new TickScheduler(new FakeClock());
+    }
+
+    // Counted per wall clock minute, the partial ones either side of the hour aside
+    private static void assertWakeups(int[] eventSeconds, long lateMs) {
+        FakeClock clock = new FakeClock();
+        TickScheduler scheduler = new TickScheduler(clock, eventSeconds);
+        long firstMinuteMs = START_MS - Math.floorMod(START_MS, MS_PER_MINUTE);
+        long endMs = firstMinuteMs + ((MINUTES + 1) * MS_PER_MINUTE);
+
+        int[] perMinute = new int[MINUTES + 1];
+        int previous = -1;
+        while (true) {
+            long delay = scheduler.getDelayToNextEvent();
+            assertTrue("delay " + delay, delay > 0 && delay <= MS_PER_MINUTE);
+            clock.nowMs += delay + lateMs;
+            if (clock.nowMs >= endMs) break;
+
+            // On an event second, late by exactly lateMs, and the one after the previous wakeup's
+            long msIntoMinute = Math.floorMod(clock.nowMs, MS_PER_MINUTE);
+            assertEquals(lateMs, msIntoMinute % MS_PER_SECOND);
+            int index = Arrays.binarySearch(eventSeconds, (int) (msIntoMinute / MS_PER_SECOND));
+            assertTrue("woke at " + msIntoMinute + " ms", index >= 0);
+            if (previous >= 0) assertEquals((previous + 1) % eventSeconds.length, index);
+            previous = index;
+
+            perMinute[(int) ((clock.nowMs - firstMinuteMs) / MS_PER_MINUTE)]++;
+        }
+
+        for (int minute = 1; minute <= MINUTES; minute++) {
+            assertEquals("minute " + minute, eventSeconds.length, perMinute[minute]);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.wordpress.ninedof.beamupwear;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TimeDecomposer against the Calendar and String.format() code it replaced, for one minute's
+ * update: the time digits and the date label. Each call moves a minute on, so the zone offset
+ * lookup and the date are recomputed as often as on the watch, wrapping after a year: the JDK's
+ * zone lookup allocates past the end of its transition table in 2037. Run with the gc profiler, whose
+ * gc.alloc.rate.norm is the bytes allocated per update:
+ *
+ *   ./gradlew :benchmark:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeFormatBenchmark {
+
+    // 2018-10-01 09:59:00 UTC
+    private static final long START_MS = 1538387940000L;
+    private static final long MS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final int MINUTES_PER_YEAR = (int) TimeUnit.DAYS.toMinutes(365);
+
+    private TimeDecomposer mTime;
+    private Calendar mCalendar;
+    private int mMinute;
+
+    @Setup
+    public void setup() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/London");
+        mTime = new TimeDecomposer(zone);
+        mCalendar = Calendar.getInstance(zone);
+        mMinute = 0;
+    }
+
+    @Benchmark
+    public void timeDecomposer(Blackhole blackhole) {
+        mTime.setTime(nextMinute());
+        for (int i = 0; i < BeamUpScene.NUM_DIGITS; i++) blackhole.consume(mTime.timeDigit(i));
+        blackhole.consume(mTime.updateDateLabel());
+        blackhole.consume(mTime.dateLabel);
+    }
+
+    // As the Engine did before TimeDecomposer
+    @Benchmark
+    public void calendarFormat(Blackhole blackhole) {
+        mCalendar.setTimeInMillis(nextMinute());
+        blackhole.consume(String.format("%02d:%02d", mCalendar.get(Calendar.HOUR_OF_DAY),
+                mCalendar.get(Calendar.MINUTE)));
+        blackhole.consume(String.format("%s %02d",
+                dayName(mCalendar.get(Calendar.DAY_OF_WEEK)), mCalendar.get(Calendar.DAY_OF_MONTH)));
+    }
+
+    private long nextMinute() {
+        mMinute = (mMinute + 1) % MINUTES_PER_YEAR;
+        return START_MS + (mMinute * MS_PER_MINUTE);
+    }
+
+    private static String dayName(int dayOfWeek) {
+        switch (dayOfWeek) {
+            case Calendar.MONDAY: return "MON";
+            case Calendar.TUESDAY: return "TUE";
+            case Calendar.WEDNESDAY: return "WED";
+            case Calendar.THURSDAY: return "THU";
+            case Calendar.FRIDAY: return "FRI";
+            case Calendar.SATURDAY: return "SAT";
+            default: return "SUN";
+        }
+    }
+
+}
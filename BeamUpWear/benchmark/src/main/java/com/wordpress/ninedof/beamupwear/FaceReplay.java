@@ -0,0 +1,290 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Golden-frame regression suite: replays each recorded InputLog in a directory through the
+ * Engine's FaceController and a FramePacer into a HeadlessTarget, and compares the checksum of
+ * every frame drawn with the log's golden file. A refactor of the scene, the pacer or the
+ * animations that changes no pixels passes; the first frame that differs is reported with its
+ * vsync time.
+ *
+ * Logs come from "dumpsys ... record start|stop" on a watch, or are written by hand. Everything is
+ * clocked by the times in the log: the pacer's clock reads the current vsync time, so no frame is
+ * dropped in a replay even if it was on the watch. Layout and glyphs are the benchmark's synthetic
+ * ones, so the checksums pin the scene's output for those inputs, not the device's pixels.
+ * Ambient frames are outlines drawn with the font, so theirs covers what they show: the digits and
+ * the date.
+ *
+ *   ./gradlew :benchmark:replay [-Pupdate]    checks replay/<name>.log against replay/<name>.golden,
+ *                                              or writes the golden files with -Pupdate
+ */
+public final class FaceReplay {
+
+    private static final String LOG_SUFFIX = ".log", GOLDEN_SUFFIX = ".golden";
+
+    private final BeamUpScene mScene = new BeamUpScene();
+    private final List<String> mFrames = new ArrayList<>();
+    private HeadlessTarget mTarget;
+    private long mVsyncNs, mFrameAtMs = -1;
+
+    private int mSurfaceWidth, mSurfaceHeight, mChinHeight;
+    private boolean mIsRound, mHasInsets, mVisible, mAmbient;
+
+    private final FramePacer mPacer = new FramePacer(new FramePacer.Clock() {
+        @Override
+        public long nanoTime() {
+            return mVsyncNs;
+        }
+    }, new FramePacer.Callbacks() {
+        @Override
+        public void postFrame() {
+            // Vsyncs come from the log, those with no frame pending are skipped
+        }
+
+        @Override
+        public boolean onAnimate(long frameTimeMs) {
+            return mController.onAnimationFrame(frameTimeMs);
+        }
+
+        @Override
+        public boolean needsDraw() {
+            return mVisible && !mAmbient && !mScene.dirty.isEmpty();
+        }
+
+        @Override
+        public void onDraw() {
+            draw();
+        }
+    });
+
+    private final FaceController mController = new FaceController(mScene, TimeZone.getTimeZone("UTC"),
+            new FaceController.Host() {
+                @Override
+                public void requestFrame() {
+                    mPacer.requestFrame();
+                }
+
+                @Override
+                public void requestFrameAt(long uptimeMs) {
+                    mFrameAtMs = uptimeMs;
+                }
+
+                @Override
+                public void requestDraw() {
+                    mPacer.requestDraw();
+                }
+
+                @Override
+                public void onMinuteShown() {
+                    // Complications are replayed from their own events, there is no ambient frame here
+                }
+
+                @Override
+                public void onStaticChanged() {
+                    // Nothing recorded to invalidate
+                }
+
+                @Override
+                public void onPaletteChanged() {
+                    // Complications are only rects here, recolored with the rest of the scene
+                }
+
+                @Override
+                public void onThemeFadeFinished() {
+                    // No paints compiled here
+                }
+            });
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "replay");
+        boolean update = args.length > 1 && "--update".equals(args[1]);
+
+        File[] logs = dir.listFiles();
+        if (logs == null) throw new IOException("No replay directory " + dir);
+        Arrays.sort(logs);
+
+        int replayed = 0, failed = 0;
+        for (File log : logs) {
+            String name = log.getName();
+            if (!name.endsWith(LOG_SUFFIX)) continue;
+
+            name = name.substring(0, name.length() - LOG_SUFFIX.length());
+            File golden = new File(dir, name + GOLDEN_SUFFIX);
+            List<String> frames = replay(log);
+            replayed++;
+            if (update) {
+                write(golden, frames);
+                System.out.println(String.format(Locale.US, "%-24s %6d frames written", name, frames.size()));
+            } else if (!check(name, frames, golden)) {
+                failed++;
+            }
+        }
+
+        System.out.println(replayed + " replayed, " + failed + " failed");
+        if (replayed == 0 || failed > 0) System.exit(1);
+    }
+
+    private static List<String> replay(File log) throws IOException {
+        FaceReplay replay = new FaceReplay();
+        Reader reader = new FileReader(log);
+        try {
+            for (InputLog.Event event : InputLog.read(reader)) replay.apply(event);
+        } finally {
+            reader.close();
+        }
+        return replay.mFrames;
+    }
+
+    // Reports the first frame that differs, and the frame counts if only those do
+    private static boolean check(String name, List<String> frames, File golden) throws IOException {
+        if (!golden.exists()) {
+            System.out.println(name + ": no golden file, write it with -Pupdate");
+            return false;
+        }
+
+        List<String> expected = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(golden));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isEmpty() && !line.startsWith("#")) expected.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+
+        for (int i = 0; i < Math.min(frames.size(), expected.size()); i++) {
+            if (frames.get(i).equals(expected.get(i))) continue;
+
+            System.out.println(name + ": frame " + i + " differs, got \"" + frames.get(i)
+                    + "\", golden \"" + expected.get(i) + "\"");
+            return false;
+        }
+        if (frames.size() != expected.size()) {
+            System.out.println(name + ": " + frames.size() + " frames drawn, golden has " + expected.size());
+            return false;
+        }
+
+        System.out.println(String.format(Locale.US, "%-24s %6d frames ok", name, frames.size()));
+        return true;
+    }
+
+    private static void write(File golden, List<String> frames) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(golden));
+        try {
+            writer.println("# <vsync ns> <interactive|ambient> <crc32>, one line per frame drawn");
+            for (String frame : frames) writer.println(frame);
+        } finally {
+            writer.close();
+        }
+    }
+
+    // In the order the Engine handles each input
+    private void apply(InputLog.Event event) {
+        switch (event.kind) {
+            case InputLog.SURFACE:
+                mSurfaceWidth = (int) event.longArg(0);
+                mSurfaceHeight = (int) event.longArg(1);
+                mController.setSurfaceWidth(mSurfaceWidth);
+                layout();
+                break;
+            case InputLog.INSETS:
+                mIsRound = event.flag(0);
+                mChinHeight = (int) event.longArg(1);
+                mHasInsets = true;
+                layout();
+                break;
+            case InputLog.ZONE:
+                mController.setTimeZone(TimeZone.getTimeZone(event.arg(0)), event.flag(1));
+                break;
+            case InputLog.BAR:
+                mController.setBarFrameRate((int) event.longArg(0));
+                break;
+            case InputLog.ROWS:
+                mController.setRows("-".equals(event.arg(0)) ? "" : event.arg(0), event.flag(1));
+                break;
+            case InputLog.THEME:
+                mController.setTheme(Palette.named(event.arg(0)), event.flag(1), event.longArg(2));
+                break;
+            case InputLog.COMPANION:
+                mScene.setCompanion(event.rest(0));
+                break;
+            case InputLog.COMPLICATION:
+                mScene.setComplication((int) event.longArg(0), event.flag(1));
+                break;
+            case InputLog.VISIBLE:
+                mVisible = event.flag(0);
+                if (mVisible && mScene.layout == null) {
+                    // No insets were dispatched, laid out square like the Engine does
+                    mHasInsets = true;
+                    layout();
+                }
+                mController.onVisibilityChanged(mVisible, event.longArg(1), event.longArg(2));
+                break;
+            case InputLog.AMBIENT:
+                mAmbient = event.flag(0);
+                mController.onAmbientModeChanged(mAmbient);
+                break;
+            case InputLog.TICK:
+                mController.onTimeTick(event.longArg(0), event.longArg(1), event.flag(2));
+                break;
+            case InputLog.UPDATE:
+                if (mVisible && !mAmbient) mController.onInteractiveUpdate(event.longArg(0), event.longArg(1));
+                break;
+            case InputLog.VSYNC:
+                mVsyncNs = event.longArg(0);
+                // A booked frame is posted once its time has come, and taken at the vsync after
+                if (mFrameAtMs >= 0 && TimeUnit.NANOSECONDS.toMillis(mVsyncNs) >= mFrameAtMs) {
+                    mFrameAtMs = -1;
+                    mPacer.requestFrame();
+                }
+                if (mPacer.isFramePending()) mPacer.onVsync(mVsyncNs);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown input " + event.kind);
+        }
+    }
+
+    // Once both surface and insets have arrived, as in Engine.calculateSizeMetrics()
+    private void layout() {
+        if (mSurfaceWidth == 0 || !mHasInsets) return;
+
+        GlyphAtlasLayout timeGlyphs = HeadlessTarget.syntheticGlyphs(GlyphAtlasLayout.TIME_CHARS,
+                mIsRound ? BeamUpScene.TIME_SIZE_ROUND : BeamUpScene.TIME_SIZE_SQUARE);
+        GlyphAtlasLayout dateGlyphs = HeadlessTarget.syntheticGlyphs(GlyphAtlasLayout.DATE_CHARS,
+                mIsRound ? BeamUpScene.DATE_SIZE_ROUND : BeamUpScene.DATE_SIZE_SQUARE);
+        mTarget = new HeadlessTarget(mSurfaceWidth, mSurfaceHeight, timeGlyphs, dateGlyphs);
+        mScene.layout(HeadlessTarget.syntheticLayout(mSurfaceWidth, mSurfaceHeight, mChinHeight, mIsRound),
+                timeGlyphs, dateGlyphs);
+    }
+
+    private void draw() {
+        if (mTarget == null) return;
+
+        long checksum;
+        if (mAmbient) {
+            CRC32 crc = new CRC32();
+            for (BeamUpScene.Digit digit : mScene.digits) crc.update(digit.value);
+            for (int i = 0; i < mScene.date.length(); i++) crc.update(mScene.date.charAt(i));
+            checksum = crc.getValue();
+        } else {
+            mScene.render(mTarget);
+            checksum = mTarget.checksum();
+        }
+        mFrames.add(mVsyncNs + (mAmbient ? " ambient " : " interactive ") + Long.toHexString(checksum));
+    }
+
+}
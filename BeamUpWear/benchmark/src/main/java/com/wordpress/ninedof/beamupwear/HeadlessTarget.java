@@ -0,0 +1,160 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.util.zip.CRC32;
+
+/**
+ * Off-screen stand-in for the device Canvas: rasterizes scene draw calls into an int[] frame and
+ * counts them. Glyphs are stamped from a fixed pattern over their atlas cells, so the cost per
+ * glyph tracks a real blit without needing the font.
+ */
+final class HeadlessTarget implements BeamUpScene.Target {
+
+    private static final int GLYPH_PADDING = 2;
+
+    final int width, height;
+    final int[] pixels;
+
+    int drawCalls;
+    long pixelsFilled;
+
+    private final GlyphAtlasLayout mTimeGlyphs, mDateGlyphs;
+    private int mClipLeft, mClipTop, mClipRight, mClipBottom;
+
+    HeadlessTarget(int width, int height, GlyphAtlasLayout timeGlyphs, GlyphAtlasLayout dateGlyphs) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        mTimeGlyphs = timeGlyphs;
+        mDateGlyphs = dateGlyphs;
+        clearClip();
+    }
+
+    @Override
+    public void clipTo(int left, int top, int right, int bottom) {
+        mClipLeft = Math.max(0, left);
+        mClipTop = Math.max(0, top);
+        mClipRight = Math.min(width, right);
+        mClipBottom = Math.min(height, bottom);
+    }
+
+    @Override
+    public void clearClip() {
+        mClipLeft = 0;
+        mClipTop = 0;
+        mClipRight = width;
+        mClipBottom = height;
+    }
+
+    @Override
+    public void fill(int color) {
+        drawCalls++;
+        fillClipped(mClipLeft, mClipTop, mClipRight, mClipBottom, color, -1);
+    }
+
+    @Override
+    public void fillRect(float left, float top, float right, float bottom, int color) {
+        drawCalls++;
+        // No blending, a pixel is covered once its center is
+        fillClipped(Math.round(left), Math.round(top), Math.round(right), Math.round(bottom), color, -1);
+    }
+
+    @Override
+    public void drawTimeGlyph(char c, int rightX, int baselineY, int color) {
+        drawCalls++;
+        stamp(mTimeGlyphs, c, rightX, baselineY, color);
+    }
+
+    @Override
+    public void drawDateText(CharSequence text, int rightX, int baselineY, int color) {
+        drawCalls++;
+        int x = rightX;
+        for (int i = text.length() - 1; i >= 0; i--) {
+            int index = mDateGlyphs.indexOf(text.charAt(i));
+            if (index < 0) continue;
+
+            stamp(mDateGlyphs, text.charAt(i), x, baselineY, color);
+            x -= mDateGlyphs.advance(index);
+        }
+    }
+
+    @Override
+    public void drawDateGlyph(char c, int rightX, int baselineY, int color) {
+        drawCalls++;
+        stamp(mDateGlyphs, c, rightX, baselineY, color);
+    }
+
+    // Stands in for the slot's cached bitmap, one blit of its whole rect
+    @Override
+    public void drawComplication(int slot, int left, int top, int right, int bottom) {
+        drawCalls++;
+        fillClipped(left, top, right, bottom, BeamUpScene.DIRTY_WHITE, slot);
+    }
+
+    void resetCounters() {
+        drawCalls = 0;
+        pixelsFilled = 0;
+    }
+
+    // Stand-in metrics for the imagine font, roughly proportioned like it
+    static GlyphAtlasLayout syntheticGlyphs(String chars, float textSize) {
+        float[] advances = new float[chars.length()];
+        int[] inkBounds = new int[chars.length() * GlyphAtlasLayout.BOUNDS_PER_CHAR];
+        float ascent = -0.8f * textSize, descent = 0.2f * textSize;
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            advances[i] = textSize * ((c == ':' || c == ' ') ? 0.3f : 0.6f);
+            // Ink fills the advance between ascent and descent, and never overhangs
+            int b = i * GlyphAtlasLayout.BOUNDS_PER_CHAR;
+            inkBounds[b + 1] = (int) Math.ceil(ascent);
+            inkBounds[b + 2] = (int) Math.floor(advances[i]);
+            inkBounds[b + 3] = (int) Math.floor(descent);
+        }
+        return new GlyphAtlasLayout(chars, advances, inkBounds, ascent, descent, 0, GLYPH_PADDING);
+    }
+
+    // The layout measureText() would give for those metrics
+    static FaceLayout syntheticLayout(int width, int height, int chinHeight, boolean isRound) {
+        float timeTextSize = isRound ? BeamUpScene.TIME_SIZE_ROUND : BeamUpScene.TIME_SIZE_SQUARE;
+        float dateTextSize = isRound ? BeamUpScene.DATE_SIZE_ROUND : BeamUpScene.DATE_SIZE_SQUARE;
+        return new FaceLayout(width, height, chinHeight, isRound, Math.round(timeTextSize * 0.6f),
+                Math.round(timeTextSize * 0.3f), Math.round(dateTextSize * 0.6f));
+    }
+
+    long checksum() {
+        CRC32 crc = new CRC32();
+        for (int pixel : pixels) {
+            crc.update(pixel >>> 24);
+            crc.update(pixel >>> 16);
+            crc.update(pixel >>> 8);
+            crc.update(pixel);
+        }
+        return crc.getValue();
+    }
+
+    private void stamp(GlyphAtlasLayout glyphs, char c, int rightX, int baselineY, int color) {
+        int index = glyphs.indexOf(c);
+        if (index < 0) return;
+
+        int left = glyphs.destLeft(index, rightX) + glyphs.padding;
+        int top = glyphs.destTop(baselineY) + glyphs.padding;
+        int right = left + glyphs.cellWidth(index) - (2 * glyphs.padding);
+        int bottom = top + glyphs.cellHeight - (2 * glyphs.padding);
+        fillClipped(left, top, right, bottom, color, c);
+    }
+
+    // pattern >= 0 leaves holes in the fill so different glyphs rasterize differently
+    private void fillClipped(int left, int top, int right, int bottom, int color, int pattern) {
+        int l = Math.max(left, mClipLeft), t = Math.max(top, mClipTop);
+        int r = Math.min(right, mClipRight), b = Math.min(bottom, mClipBottom);
+        for (int y = t; y < b; y++) {
+            int row = y * width;
+            for (int x = l; x < r; x++) {
+                if (pattern >= 0 && ((((x - left) * 7) + ((y - top) * 13) + pattern) & 3) == 0) continue;
+
+                pixels[row + x] = color;
+                pixelsFilled++;
+            }
+        }
+    }
+
+}
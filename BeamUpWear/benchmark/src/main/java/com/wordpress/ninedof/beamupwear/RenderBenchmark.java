@@ -0,0 +1,228 @@
+package com.wordpress.ninedof.beamupwear;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays one minute of the face as a synthetic 60 Hz vsync stream through a FramePacer, against
+ * a HeadlessTarget, for each common surface size in both shapes. Reports frame time percentiles,
+ * allocations and draw calls per paced frame, and fails if any vsync was drawn more than once or
+ * if the measured minute allocated.
+ *
+ * The face is moved by the Engine's own FaceController, woken every second. The pacer's clock is
+ * the vsync time plus the real time spent since it, so a draw that overruns the frame drops the
+ * next one as on a device. Glyph metrics are synthetic, scaled from the text size. With a bar
+ * frame rate the bar follows the seconds continuously instead of stepping each quarter.
+ *
+ *   ./gradlew :benchmark:run [-Pwarmups=<warm-up minutes>] [-PbarFps=<continuous bar fps>]
+ */
+public final class RenderBenchmark {
+
+    private static final int FPS = 60, FRAMES = 60 * FPS;
+    private static final int[] SIZES = { 320, 390, 454 };
+    // The same minute is replayed, so an allocation in the face recurs every time. One that goes
+    // away was HotSpot's, e.g. the draw path being compiled on a short warm-up
+    private static final int ALLOCATION_RETRIES = 3;
+
+    // 2018-10-01 09:59:00 UTC, so every digit changes at the end of the minute
+    private static final long START_MS = 1538387940000L;
+
+    private final BeamUpScene mScene = new BeamUpScene();
+    private final TimeDecomposer mTime = new TimeDecomposer(TimeZone.getTimeZone("UTC"));
+    private final HeadlessTarget mTarget;
+
+    private final FramePacer mPacer = new FramePacer(new FramePacer.Clock() {
+        @Override
+        public long nanoTime() {
+            return mVsyncNs + (System.nanoTime() - mVsyncStartNs);
+        }
+    }, new FramePacer.Callbacks() {
+        @Override
+        public void postFrame() {
+            // The replay loop checks isFramePending() at every vsync
+        }
+
+        @Override
+        public boolean onAnimate(long frameTimeMs) {
+            return mController.onAnimationFrame(frameTimeMs);
+        }
+
+        @Override
+        public boolean needsDraw() {
+            return !mScene.dirty.isEmpty();
+        }
+
+        @Override
+        public void onDraw() {
+            mScene.render(mTarget);
+            mDrawsThisVsync++;
+        }
+    });
+
+    private final FaceController mController = new FaceController(mScene, TimeZone.getTimeZone("UTC"),
+            new FaceController.Host() {
+                @Override
+                public void requestFrame() {
+                    mPacer.requestFrame();
+                }
+
+                @Override
+                public void requestFrameAt(long uptimeMs) {
+                    mFrameAtMs = uptimeMs;
+                }
+
+                @Override
+                public void requestDraw() {
+                    mPacer.requestDraw();
+                }
+
+                @Override
+                public void onMinuteShown() {
+                    // No complications or ambient frame here
+                }
+
+                @Override
+                public void onStaticChanged() {
+                    // Nothing recorded to invalidate
+                }
+
+                @Override
+                public void onPaletteChanged() {
+                    // The theme never changes here
+                }
+
+                @Override
+                public void onThemeFadeFinished() {
+                    // Nor fades
+                }
+            });
+
+    private final long[] mFrameNs = new long[FRAMES];
+    private int mFrameCount, mDrawsThisVsync;
+    private long mVsyncNs, mVsyncStartNs, mFrameAtMs = -1;
+    private long mAllocatedBytes, mDrawCalls, mPixelsFilled, mDraws, mDropped;
+    private int mLastSecond = -1;
+
+    private RenderBenchmark(int size, boolean isRound, int barFps) {
+        GlyphAtlasLayout timeGlyphs = HeadlessTarget.syntheticGlyphs(GlyphAtlasLayout.TIME_CHARS,
+                isRound ? BeamUpScene.TIME_SIZE_ROUND : BeamUpScene.TIME_SIZE_SQUARE);
+        GlyphAtlasLayout dateGlyphs = HeadlessTarget.syntheticGlyphs(GlyphAtlasLayout.DATE_CHARS,
+                isRound ? BeamUpScene.DATE_SIZE_ROUND : BeamUpScene.DATE_SIZE_SQUARE);
+
+        mTarget = new HeadlessTarget(size, size, timeGlyphs, dateGlyphs);
+        mScene.layout(HeadlessTarget.syntheticLayout(size, size, 0, isRound), timeGlyphs, dateGlyphs);
+        mController.setSurfaceWidth(size);
+        mController.setBarFrameRate(barFps);
+    }
+
+    public static void main(String[] args) {
+        int warmups = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int barFps = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        System.out.println(String.format(Locale.US, "%-12s %9s %9s %9s %9s %12s %11s %12s %7s %7s %7s",
+                "surface", "p50 us", "p90 us", "p99 us", "max us", "alloc B/fr", "draws/fr", "px/fr",
+                "frames", "drawn", "dropped"));
+        for (int size : SIZES) {
+            for (boolean isRound : new boolean[] { true, false }) {
+                RenderBenchmark benchmark = new RenderBenchmark(size, isRound, barFps);
+                for (int i = 0; i < warmups; i++) benchmark.replayMinute();
+                benchmark.replayMinute();
+                for (int i = 0; i < ALLOCATION_RETRIES && benchmark.mAllocatedBytes > 0; i++) benchmark.replayMinute();
+
+                String name = size + (isRound ? " round" : " square");
+                benchmark.report(name);
+                if (benchmark.mAllocatedBytes > 0) {
+                    throw new IllegalStateException(name + " allocated " + benchmark.mAllocatedBytes
+                            + " bytes in each of " + (ALLOCATION_RETRIES + 1) + " warm minutes");
+                }
+            }
+        }
+    }
+
+    private void replayMinute() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        boolean canCountAllocations = threads instanceof com.sun.management.ThreadMXBean;
+
+        reset();
+        mAllocatedBytes = 0;
+        mDrawCalls = 0;
+        mPixelsFilled = 0;
+        mFrameCount = 0;
+        long drawsBefore = mPacer.draws, droppedBefore = mPacer.dropped;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            mVsyncNs = TimeUnit.MILLISECONDS.toNanos(START_MS) + ((frame * TimeUnit.SECONDS.toNanos(1)) / FPS);
+            long vsyncMs = TimeUnit.NANOSECONDS.toMillis(mVsyncNs);
+            onTick(vsyncMs);
+            if (mFrameAtMs >= 0 && vsyncMs >= mFrameAtMs) {
+                mFrameAtMs = -1;
+                mPacer.requestFrame();
+            }
+            if (!mPacer.isFramePending()) continue;
+
+            mTarget.resetCounters();
+            mDrawsThisVsync = 0;
+            long allocBefore = canCountAllocations
+                    ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) : 0;
+            mVsyncStartNs = System.nanoTime();
+            mPacer.onVsync(mVsyncNs);
+            mFrameNs[mFrameCount++] = System.nanoTime() - mVsyncStartNs;
+            long allocAfter = canCountAllocations
+                    ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) : 0;
+            if (mDrawsThisVsync > 1) {
+                throw new IllegalStateException(mDrawsThisVsync + " draws for the vsync at frame " + frame);
+            }
+
+            mAllocatedBytes += allocAfter - allocBefore;
+            mDrawCalls += mTarget.drawCalls;
+            mPixelsFilled += mTarget.pixelsFilled;
+        }
+        mDraws = mPacer.draws - drawsBefore;
+        mDropped = mPacer.dropped - droppedBefore;
+    }
+
+    // The previous minute ends mid-transition, so the scene is put back before the face is shown again
+    private void reset() {
+        for (int i = 0; i < BeamUpScene.NUM_DIGITS; i++) {
+            mScene.setDigitY(i, mScene.layout.baseline);
+            mScene.setDigitColor(i, BeamUpScene.WHITE);
+            mScene.setBeamBottom(i, 0);
+        }
+        mScene.setBarRight(0);
+        mLastSecond = -1;
+        mFrameAtMs = -1;
+        mController.cancel();
+        mPacer.cancel();
+        mController.onVisibilityChanged(true, START_MS, START_MS);
+    }
+
+    // Stands in for the Engine's update timer, which wakes once per second at most
+    private void onTick(long nowMs) {
+        mTime.setTime(nowMs);
+        if (mTime.second == mLastSecond) return;
+
+        mLastSecond = mTime.second;
+        mController.onInteractiveUpdate(nowMs, nowMs);
+    }
+
+    private void report(String name) {
+        int frames = Math.max(1, mFrameCount);
+        long[] sorted = Arrays.copyOf(mFrameNs, frames);
+        Arrays.sort(sorted);
+        System.out.println(String.format(Locale.US, "%-12s %9.1f %9.1f %9.1f %9.1f %12.1f %11.2f %12.0f %7d %7d %7d",
+                name,
+                sorted[frames / 2] / 1000.0,
+                sorted[(frames * 9) / 10] / 1000.0,
+                sorted[(frames * 99) / 100] / 1000.0,
+                sorted[frames - 1] / 1000.0,
+                (double) mAllocatedBytes / frames,
+                (double) mDrawCalls / frames,
+                (double) mPixelsFilled / frames,
+                mFrameCount, mDraws, mDropped));
+    }
+
+}